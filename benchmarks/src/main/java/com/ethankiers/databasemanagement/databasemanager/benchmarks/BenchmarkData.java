@@ -0,0 +1,101 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+import com.ethankiers.databasemanagement.databasemanager.TuningProfile;
+
+/**
+ * Generates the synthetic databases and workbooks the benchmarks run against.
+ * Row i always has the same values, so lookups can pick any key below the row count.
+ */
+final class BenchmarkData {
+
+    static final String TABLE = "Records";
+    static final String[] COLUMNS = {"Id", "Name", "Age", "City"};
+
+    private BenchmarkData() {
+    }
+
+    static String key(int i) {
+        return "K" + i;
+    }
+
+    static String[] row(int i) {
+        return new String[]{key(i), "name" + (i % 1000), String.valueOf(i % 100), "city" + (i % 50)};
+    }
+
+    static Path createDatabase(int rows) throws IOException, SQLException {
+        return createDatabase(rows, null);
+    }
+
+    // The profile is applied when the file is created, so its page size is used too
+    static Path createDatabase(int rows, TuningProfile profile) throws IOException, SQLException {
+        Path file = Files.createTempFile("dbm-bench", ".db");
+        Files.delete(file); // page_size only applies to a database SQLite creates itself
+        try (DatabaseManager db = DatabaseManager.builder(file.toString()).profile(profile).build()) {
+            LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+            for (String column : COLUMNS) {
+                columns.put(column, "TEXT");
+            }
+            db.createTable(TABLE, columns);
+            db.addRows(TABLE, new AbstractList<>() {
+                @Override
+                public String[] get(int index) {
+                    return row(index);
+                }
+
+                @Override
+                public int size() {
+                    return rows;
+                }
+            });
+        }
+        return file;
+    }
+
+    // Writes the sheets through SXSSF so generating large workbooks does not need much heap
+    static Path createWorkbook(int rowsPerSheet, int sheets) throws IOException {
+        Path file = Files.createTempFile("dbm-bench", ".xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+            for (int s = 0; s < sheets; s++) {
+                Sheet sheet = workbook.createSheet(TABLE + s);
+                Row header = sheet.createRow(0);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    header.createCell(c).setCellValue(COLUMNS[c]);
+                }
+                for (int i = 0; i < rowsPerSheet; i++) {
+                    Row row = sheet.createRow(i + 1);
+                    String[] values = row(i);
+                    row.createCell(0).setCellValue(values[0]);
+                    row.createCell(1).setCellValue(values[1]);
+                    row.createCell(2).setCellValue(i % 100);
+                    row.createCell(3).setCellValue(values[3]);
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+        }
+        return file;
+    }
+
+    static void delete(Path file) throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+            Files.deleteIfExists(Path.of(file + "-journal"));
+        }
+    }
+}
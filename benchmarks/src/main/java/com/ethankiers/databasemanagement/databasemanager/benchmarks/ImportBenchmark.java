@@ -0,0 +1,80 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+
+/**
+ * Time to import a generated workbook of {@code sheets} sheets with {@code rows} rows each into an empty database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"2"})
+    public int sheets;
+
+    @Param({"workbook", "streaming", "parallel"})
+    public String mode;
+
+    private Path workbook;
+    private Path file;
+    private DatabaseManager db;
+
+    @Setup(Level.Trial)
+    public void createWorkbook() throws IOException {
+        workbook = BenchmarkData.createWorkbook(rows, sheets);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkbook() throws IOException {
+        Files.deleteIfExists(workbook);
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() throws IOException {
+        file = Files.createTempFile("dbm-bench", ".db");
+        db = new DatabaseManager(file.toString());
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() throws IOException, SQLException {
+        db.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public boolean importWorkbook() {
+        return switch (mode) {
+            case "workbook" -> db.importXlsxToDatabase(workbook.toString());
+            case "streaming" -> db.importXlsxToDatabaseStreaming(workbook.toString());
+            case "parallel" -> db.importXlsxToDatabaseParallel(workbook.toString(), sheets);
+            default -> throw new IllegalArgumentException("Unknown import mode: " + mode);
+        };
+    }
+}
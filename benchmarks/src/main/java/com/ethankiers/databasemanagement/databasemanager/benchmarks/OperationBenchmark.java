@@ -0,0 +1,106 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+
+/**
+ * Throughput and latency of the per-call operations against a generated table of {@code rows} rows.
+ * Writes put the table back the way they found it so every iteration sees the same data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    // Index the Id column through addLookupIndex, which also limits belongsToTable to it
+    @Param({"false", "true"})
+    public boolean lookupIndex;
+
+    private Path file;
+    private DatabaseManager db;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        file = BenchmarkData.createDatabase(rows);
+        db = new DatabaseManager(file.toString());
+        if (lookupIndex) {
+            db.addLookupIndex(BenchmarkData.TABLE, List.of("Id"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        db.close();
+        BenchmarkData.delete(file);
+    }
+
+    // Walks the keys with a large stride so consecutive calls do not hit neighbouring rows
+    private int nextIndex() {
+        next = (next + 7919) % rows;
+        return next;
+    }
+
+    @Benchmark
+    public List<String> pointLookup() throws SQLException {
+        return db.getRow(BenchmarkData.TABLE, "Id", BenchmarkData.key(nextIndex()));
+    }
+
+    @Benchmark
+    public List<String> filteredValues() throws SQLException {
+        return db.getFilteredValues(BenchmarkData.TABLE, new String[]{"Name", "City"}, "Id", BenchmarkData.key(nextIndex()));
+    }
+
+    @Benchmark
+    public List<String> filteredSelect() throws SQLException {
+        return db.getColumnValuesByFilter(BenchmarkData.TABLE, "Id", "City", "city" + (nextIndex() % 50));
+    }
+
+    @Benchmark
+    public boolean update() throws SQLException {
+        int i = nextIndex();
+        return db.updateRowInTable(BenchmarkData.TABLE, "Id", BenchmarkData.key(i), List.of(BenchmarkData.row(i)));
+    }
+
+    @Benchmark
+    public boolean deleteAndReinsert() throws SQLException {
+        int i = nextIndex();
+        db.deleteRowFromTable(BenchmarkData.TABLE, "Id", BenchmarkData.key(i));
+        return db.addRowToTable(BenchmarkData.TABLE, BenchmarkData.row(i));
+    }
+
+    @Benchmark
+    public boolean membershipHit() throws SQLException {
+        return db.belongsToTable(BenchmarkData.TABLE, BenchmarkData.key(nextIndex()));
+    }
+
+    @Benchmark
+    public boolean membershipMiss() throws SQLException {
+        return db.belongsToTable(BenchmarkData.TABLE, "missing" + nextIndex());
+    }
+}
@@ -0,0 +1,133 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+import com.ethankiers.databasemanagement.databasemanager.TuningProfile;
+
+/**
+ * What each tuning profile does to import time, point lookups and single-row commits.
+ * "none" opens the database without any PRAGMAs, the way the plain constructors do.
+ */
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProfileBenchmark {
+
+    private static TuningProfile profile(String name) {
+        return name.equals("none") ? null : TuningProfile.fromName(name);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ImportState {
+        @Param({"none", "bulk-load", "read-heavy", "durable"})
+        public String profile;
+
+        @Param({"50000"})
+        public int rows;
+
+        Path workbook;
+        Path file;
+        DatabaseManager db;
+
+        @Setup(Level.Trial)
+        public void createWorkbook() throws IOException {
+            workbook = BenchmarkData.createWorkbook(rows, 1);
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteWorkbook() throws IOException {
+            Files.deleteIfExists(workbook);
+        }
+
+        @Setup(Level.Invocation)
+        public void openDatabase() throws IOException {
+            file = Files.createTempFile("dbm-bench", ".db");
+            Files.delete(file);
+            db = DatabaseManager.builder(file.toString()).profile(profile(profile)).build();
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeDatabase() throws IOException, SQLException {
+            db.close();
+            BenchmarkData.delete(file);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class QueryState {
+        @Param({"none", "bulk-load", "read-heavy", "durable"})
+        public String profile;
+
+        @Param({"100000"})
+        public int rows;
+
+        Path file;
+        DatabaseManager db;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, SQLException {
+            file = BenchmarkData.createDatabase(rows, profile(profile));
+            db = DatabaseManager.builder(file.toString()).profile(profile(profile)).build();
+            db.addLookupIndex(BenchmarkData.TABLE, List.of("Id"));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, SQLException {
+            db.close();
+            BenchmarkData.delete(file);
+        }
+
+        int nextIndex() {
+            next = (next + 7919) % rows;
+            return next;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean importWorkbook(ImportState state) {
+        return state.db.importXlsxToDatabaseStreaming(state.workbook.toString());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public List<String> pointLookup(QueryState state) throws SQLException {
+        return state.db.getRow(BenchmarkData.TABLE, "Id", BenchmarkData.key(state.nextIndex()));
+    }
+
+    // Each call is its own transaction, so this shows the cost of the synchronous setting
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public boolean singleRowCommit(QueryState state) throws SQLException {
+        int i = state.nextIndex();
+        return state.db.updateRowInTable(BenchmarkData.TABLE, "Id", BenchmarkData.key(i), List.of(BenchmarkData.row(i)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+
+/**
+ * Read throughput of 1, 2, 4 and 8 threads sharing one manager. With {@code pooled} the manager has one
+ * reader connection per thread, without it every call waits for the single connection.
+ * Each invocation splits a fixed number of reads over the threads, so the scores are reads per millisecond
+ * whatever the thread count. Reads only scale as far as the machine has free cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadScalingBenchmark {
+
+    private static final int LOOKUPS = 512;
+    private static final int SCANS = 16;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"true", "false"})
+    public boolean pooled;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path file;
+    private DatabaseManager db;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        file = BenchmarkData.createDatabase(rows);
+        db = new DatabaseManager(file.toString(), pooled ? threads : 0);
+        db.addLookupIndex(BenchmarkData.TABLE, List.of("Id"));
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        executor.shutdownNow();
+        db.close();
+        BenchmarkData.delete(file);
+    }
+
+    interface Read {
+        int run(int index) throws SQLException;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int pointLookup() throws Exception {
+        return spread(LOOKUPS, i -> db.getRow(BenchmarkData.TABLE, "Id", BenchmarkData.key(i * 7919 % rows)).size());
+    }
+
+    // Reads every row, so the time is spent inside SQLite rather than waiting for the connection
+    @Benchmark
+    @OperationsPerInvocation(SCANS)
+    public int filteredScan() throws Exception {
+        return spread(SCANS, i -> db.getColumnValuesByFilter(BenchmarkData.TABLE, "Id", "City", "city" + i % 50).size());
+    }
+
+    // Runs reads 0 to count - 1 split evenly over the threads and waits for all of them
+    private int spread(int count, Read read) throws InterruptedException, ExecutionException {
+        List<Future<Integer>> parts = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            Callable<Integer> part = () -> {
+                int found = 0;
+                for (int i = first; i < count; i += threads) {
+                    found += read.run(i);
+                }
+                return found;
+            };
+            parts.add(executor.submit(part));
+        }
+        int found = 0;
+        for (Future<Integer> part : parts) {
+            found += part.get();
+        }
+        return found;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.ColumnarSnapshot;
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+
+/**
+ * Whole-table aggregates over a generated table of {@code rows} rows, computed from getColumnValues
+ * and from a columnar snapshot loaded once per trial. loadSnapshot shows what the snapshot costs up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path file;
+    private DatabaseManager db;
+    private ColumnarSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        file = BenchmarkData.createDatabase(rows);
+        db = new DatabaseManager(file.toString());
+        snapshot = db.loadColumnarSnapshot(BenchmarkData.TABLE, List.of("Age", "City"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        snapshot.close();
+        db.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public double sumJdbc() throws SQLException {
+        double sum = 0;
+        for (String value : db.getColumnValues(BenchmarkData.TABLE, "Age")) {
+            sum += Double.parseDouble(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double sumSnapshot() {
+        return snapshot.sum("Age");
+    }
+
+    @Benchmark
+    public Map<String, Long> countByJdbc() throws SQLException {
+        Map<String, Long> counts = new HashMap<>();
+        for (String value : db.getColumnValues(BenchmarkData.TABLE, "City")) {
+            counts.merge(value, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public Map<String, Long> countBySnapshot() {
+        return snapshot.countBy("City");
+    }
+
+    // Closed straight away, so the dictionaries of earlier invocations do not pile up off the heap
+    @Benchmark
+    public int loadSnapshot() throws SQLException {
+        try (ColumnarSnapshot loaded = db.loadColumnarSnapshot(BenchmarkData.TABLE, List.of("Age", "City"))) {
+            return loaded.getRowCount();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ethankiers.databasemanagement.databasemanager.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ethankiers.databasemanagement.databasemanager.DatabaseManager;
+
+/**
+ * Time to insert {@code rows} rows into an empty table one call at a time, where every row is its own
+ * transaction, against addRows, which sends batches of {@code batchSize} rows inside one transaction.
+ * Each invocation starts from a new database file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriteBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    // Only used by addRows, addRowToTable sends every row on its own
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private List<String[]> data;
+    private Path file;
+    private DatabaseManager db;
+
+    @Setup(Level.Trial)
+    public void createRows() {
+        data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(BenchmarkData.row(i));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void openDatabase() throws IOException, SQLException {
+        file = BenchmarkData.createDatabase(0);
+        db = DatabaseManager.builder(file.toString()).batchSize(batchSize).build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeDatabase() throws IOException, SQLException {
+        db.close();
+        BenchmarkData.delete(file);
+    }
+
+    @Benchmark
+    public boolean unbatched() throws SQLException {
+        boolean added = true;
+        for (String[] row : data) {
+            added &= db.addRowToTable(BenchmarkData.TABLE, row);
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean batched() throws SQLException {
+        return db.addRows(BenchmarkData.TABLE, data);
+    }
+}
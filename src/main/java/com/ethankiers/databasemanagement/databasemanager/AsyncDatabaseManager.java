@@ -0,0 +1,270 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs the operations of a {@link DatabaseManager} on an executor and returns {@link CompletableFuture}s,
+ * so UI and service threads never wait on SQLite. By default every call gets its own virtual thread.
+ * Results are the same as the blocking methods, an SQLException completes the future exceptionally.
+ * Cancelling a future with {@code cancel(true)} interrupts its thread: imports stop at the next batch
+ * (rows committed before that stay written, the parallel import rolls back completely),
+ * other calls finish in the background and their result is dropped.
+ */
+public class AsyncDatabaseManager implements AutoCloseable {
+
+    private final DatabaseManager manager;
+    private final Executor executor;
+    // Only the default executor is shut down by close(), a caller's executor stays theirs
+    private final ExecutorService ownedExecutor;
+
+    public AsyncDatabaseManager(DatabaseManager manager) {
+        this.manager = manager;
+        this.ownedExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.executor = ownedExecutor;
+    }
+
+    public AsyncDatabaseManager(DatabaseManager manager, Executor executor) {
+        this.manager = manager;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    // The wrapped manager, for settings and statistics that do not touch the database
+    public DatabaseManager getManager() {
+        return manager;
+    }
+
+    public CompletableFuture<Boolean> importXlsxToDatabase(String filePath, ImportProgress progress) {
+        return submit(() -> manager.importXlsxToDatabase(filePath, progress));
+    }
+
+    public CompletableFuture<Boolean> importXlsxToDatabaseStreaming(String filePath, ImportProgress progress) {
+        return submit(() -> manager.importXlsxToDatabaseStreaming(filePath, progress));
+    }
+
+    public CompletableFuture<Boolean> importXlsxToDatabaseParallel(String filePath, int parserThreads, ImportProgress progress) {
+        return submit(() -> manager.importXlsxToDatabaseParallel(filePath, parserThreads, progress));
+    }
+
+    public CompletableFuture<Boolean> importXlsxToDatabaseIncremental(String filePath, Map<String, String> keyColumns,
+                                                                      boolean skipUnchanged, ImportProgress progress) {
+        return submit(() -> manager.importXlsxToDatabaseIncremental(filePath, keyColumns, skipUnchanged, progress));
+    }
+
+    public CompletableFuture<Boolean> importCsvToDatabase(String filePath, ImportProgress progress) {
+        return submit(() -> manager.importCsvToDatabase(filePath, progress));
+    }
+
+    public CompletableFuture<Boolean> importDelimitedToDatabase(String filePath, String tableName, char delimiter, ImportProgress progress) {
+        return submit(() -> manager.importDelimitedToDatabase(filePath, tableName, delimiter, progress));
+    }
+
+    public CompletableFuture<Boolean> exportTablesToXlsx(List<String> tableNames, String filePath) {
+        return submit(() -> manager.exportTablesToXlsx(tableNames, filePath));
+    }
+
+    public CompletableFuture<Boolean> exportTableToXlsx(String tableName, String filePath) {
+        return submit(() -> manager.exportTableToXlsx(tableName, filePath));
+    }
+
+    public CompletableFuture<Boolean> exportQueryToXlsx(String sql, String sheetName, String filePath, Object... parameters) {
+        return submit(() -> manager.exportQueryToXlsx(sql, sheetName, filePath, parameters));
+    }
+
+    public CompletableFuture<Boolean> exportTableToCsv(String tableName, String filePath) {
+        return submit(() -> manager.exportTableToCsv(tableName, filePath));
+    }
+
+    public CompletableFuture<Boolean> exportQueryToCsv(String sql, String filePath, Object... parameters) {
+        return submit(() -> manager.exportQueryToCsv(sql, filePath, parameters));
+    }
+
+    public CompletableFuture<Boolean> addRowToTable(String tableName, String[] values) {
+        return submit(() -> manager.addRowToTable(tableName, values));
+    }
+
+    public CompletableFuture<Boolean> addRows(String tableName, Iterable<String[]> rows) {
+        return submit(() -> manager.addRows(tableName, rows));
+    }
+
+    public CompletableFuture<Boolean> updateRowInTable(String tableName, String columnName, String columnValue, List<String> newValues) {
+        return submit(() -> manager.updateRowInTable(tableName, columnName, columnValue, newValues));
+    }
+
+    public CompletableFuture<Map<String, Integer>> updateRowsInTable(String tableName, String columnName, Map<String, List<String>> newValuesByKey) {
+        return submit(() -> manager.updateRowsInTable(tableName, columnName, newValuesByKey));
+    }
+
+    public CompletableFuture<List<String>> getRow(String tableName, String columnName, String field) {
+        return submit(() -> manager.getRow(tableName, columnName, field));
+    }
+
+    public CompletableFuture<List<String>> getFilteredValues(String tableName, String[] columns, String filterColumn, String filterValue) {
+        return submit(() -> manager.getFilteredValues(tableName, columns, filterColumn, filterValue));
+    }
+
+    public CompletableFuture<Boolean> deleteRowFromTable(String tableName, String filterColumn, String filterValue) {
+        return submit(() -> manager.deleteRowFromTable(tableName, filterColumn, filterValue));
+    }
+
+    public CompletableFuture<Map<String, Integer>> deleteRowsFromTable(String tableName, String filterColumn, Collection<String> filterValues) {
+        return submit(() -> manager.deleteRowsFromTable(tableName, filterColumn, filterValues));
+    }
+
+    public CompletableFuture<Boolean> belongsToTable(String tableName, String field) {
+        return submit(() -> manager.belongsToTable(tableName, field));
+    }
+
+    public CompletableFuture<Boolean> addLookupIndex(String tableName, List<String> columns) {
+        return submit(() -> manager.addLookupIndex(tableName, columns));
+    }
+
+    public CompletableFuture<Boolean> dropLookupIndex(String tableName) {
+        return submit(() -> manager.dropLookupIndex(tableName));
+    }
+
+    public CompletableFuture<List<String>> getTableHeaders(String tableName) {
+        return submit(() -> manager.getTableHeaders(tableName));
+    }
+
+    public CompletableFuture<List<String>> getColumnTypes(String tableName) {
+        return submit(() -> manager.getColumnTypes(tableName));
+    }
+
+    public CompletableFuture<List<String>> getColumnValues(String tableName, String columnName) {
+        return submit(() -> manager.getColumnValues(tableName, columnName));
+    }
+
+    // action runs on the executor thread once per value
+    public CompletableFuture<Boolean> forEachColumnValue(String tableName, String columnName, Consumer<String> action) {
+        return submit(() -> manager.forEachColumnValue(tableName, columnName, action));
+    }
+
+    public CompletableFuture<Page> getPage(String tableName, String continuationToken, int pageSize) {
+        return submit(() -> manager.getPage(tableName, continuationToken, pageSize));
+    }
+
+    public CompletableFuture<Page> getPage(String tableName, String orderColumn, String continuationToken, int pageSize) {
+        return submit(() -> manager.getPage(tableName, orderColumn, continuationToken, pageSize));
+    }
+
+    public CompletableFuture<List<String>> getTables() {
+        return submit(manager::getTables);
+    }
+
+    // Runs a query built with getManager().query(tableName), the query must not be changed until the future completes
+    public CompletableFuture<List<List<String>>> list(Query query) {
+        return submit(query::list);
+    }
+
+    public CompletableFuture<List<String>> first(Query query) {
+        return submit(query::first);
+    }
+
+    public CompletableFuture<Long> count(Query query) {
+        return submit(query::count);
+    }
+
+    public CompletableFuture<List<String>> explain(Query query) {
+        return submit(query::explain);
+    }
+
+    public CompletableFuture<ColumnarSnapshot> loadColumnarSnapshot(String tableName, List<String> columns) {
+        return submit(() -> manager.loadColumnarSnapshot(tableName, columns));
+    }
+
+    // Waits on the executor for the next changes of a subscription from getManager().subscribeToChanges()
+    public CompletableFuture<List<ChangeRecord>> poll(ChangeSubscription subscription, int maxRecords, Duration timeout) {
+        return submit(() -> subscription.poll(maxRecords, timeout));
+    }
+
+    public CompletableFuture<List<String>> getColumnValuesByFilter(String tableName, String columnToSelect, String filterColumn, String filterValue) {
+        return submit(() -> manager.getColumnValuesByFilter(tableName, columnToSelect, filterColumn, filterValue));
+    }
+
+    public CompletableFuture<Void> createTable(String tableName, LinkedHashMap<String, String> columns) {
+        return submit(() -> {
+            manager.createTable(tableName, columns);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addColumnsToTable(String tableName, LinkedHashMap<String, String> columns) {
+        return submit(() -> {
+            manager.addColumnsToTable(tableName, columns);
+            return null;
+        });
+    }
+
+    // Shuts down the default executor, running calls finish first. The wrapped manager is left open.
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.close();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> call) {
+        Task<T> task = new Task<>(call);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.completeExceptionally(e);
+        }
+        return task;
+    }
+
+    // A future that remembers the thread running it, so cancel(true) can interrupt that thread
+    private static final class Task<T> extends CompletableFuture<T> implements Runnable {
+        private final Callable<T> call;
+        private Thread runner; // Guarded by this
+
+        Task(Callable<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return; // Cancelled before it started
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(call.call());
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                Thread.interrupted(); // A late cancel must not leak into the executor's next task
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mayInterruptIfRunning) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
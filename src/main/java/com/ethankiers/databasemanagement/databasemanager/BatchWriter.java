@@ -0,0 +1,167 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Writes rows through one prepared statement using JDBC batches inside an explicit transaction.
+ * Rows are sent every {@code batchSize} rows and committed every {@code batchesPerCommit} batches,
+ * so SQLite syncs its journal once per commit instead of once per row.
+ * If the writer is closed without {@link #finish()} the open transaction is rolled back, after it anything
+ * written since (by a progress callback) is committed.
+ * When the connection is already inside a transaction the caller owns it and nothing is committed here.
+ * Writers created with {@code keepUpdateCounts} remember how many rows each added statement changed.
+ * With {@link #recordChanges(ChangeFeed, String)} each commit also logs a BULK change for the rows it holds.
+ */
+final class BatchWriter implements AutoCloseable {
+
+    private final Connection conn;
+    private final PreparedStatement pstmt;
+    private final int batchSize;
+    private final int batchesPerCommit;
+    private final boolean ownsTransaction;
+    private final boolean keepUpdateCounts;
+
+    private int pendingRows = 0;
+    private int pendingBatches = 0;
+    private long rowsWritten = 0;
+    private boolean finished = false;
+    private int[] updateCounts = new int[0];
+    private ChangeFeed feed;
+    private String feedTable;
+    private long committedRows = 0;
+
+    BatchWriter(Connection conn, String sql, int batchSize, int batchesPerCommit) throws SQLException {
+        this(conn, sql, batchSize, batchesPerCommit, false);
+    }
+
+    BatchWriter(Connection conn, String sql, int batchSize, int batchesPerCommit, boolean keepUpdateCounts) throws SQLException {
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.batchesPerCommit = batchesPerCommit;
+        this.keepUpdateCounts = keepUpdateCounts;
+        this.ownsTransaction = conn.getAutoCommit();
+        if (ownsTransaction) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            this.pstmt = conn.prepareStatement(sql);
+        } catch (SQLException e) {
+            restoreAutoCommit();
+            throw e;
+        }
+    }
+
+    // Records a BULK change with the rows of each commit, flushed to the change log inside the transaction
+    // that commits them. Only used when the writer owns its transaction, otherwise the caller records the change
+    void recordChanges(ChangeFeed feed, String tableName) {
+        this.feed = feed;
+        this.feedTable = tableName;
+    }
+
+    // Long and Double values are bound as numbers, anything else as text
+    void add(Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                pstmt.setNull(i + 1, Types.NULL);
+            } else if (value instanceof Long) {
+                pstmt.setLong(i + 1, (Long) value);
+            } else if (value instanceof Double) {
+                pstmt.setDouble(i + 1, (Double) value);
+            } else {
+                pstmt.setString(i + 1, value.toString());
+            }
+        }
+        pstmt.addBatch();
+
+        if (++pendingRows >= batchSize) {
+            flush();
+        }
+    }
+
+    // Sends the remaining rows and commits everything written so far
+    void finish() throws SQLException {
+        flush();
+        if (ownsTransaction && pendingBatches > 0) {
+            commit();
+        }
+        pendingBatches = 0;
+        finished = true;
+    }
+
+    long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    // Rows changed by each added statement in the order they were added, only kept with keepUpdateCounts
+    int[] getUpdateCounts() {
+        return Arrays.copyOf(updateCounts, (int) rowsWritten);
+    }
+
+    private void flush() throws SQLException {
+        if (pendingRows == 0) {
+            return;
+        }
+        int[] counts = pstmt.executeBatch();
+        if (keepUpdateCounts) {
+            if (updateCounts.length < rowsWritten + counts.length) {
+                updateCounts = Arrays.copyOf(updateCounts, Math.max(updateCounts.length * 2, (int) rowsWritten + counts.length));
+            }
+            System.arraycopy(counts, 0, updateCounts, (int) rowsWritten, counts.length);
+        }
+        rowsWritten += pendingRows;
+        pendingRows = 0;
+
+        if (++pendingBatches >= batchesPerCommit) {
+            if (ownsTransaction) {
+                commit();
+            }
+            pendingBatches = 0;
+        }
+    }
+
+    private void commit() throws SQLException {
+        long rows = rowsWritten - committedRows;
+        if (feed != null) {
+            if (rows > 0) {
+                feed.record(ChangeRecord.Type.BULK, feedTable, null, null, null, rows);
+            }
+            // Also numbers changes recorded by writes nested in this transaction
+            feed.flush(conn);
+        }
+        conn.commit();
+        committedRows = rowsWritten;
+        if (feed != null) {
+            feed.publish();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            pstmt.close();
+            if (ownsTransaction) {
+                if (finished) {
+                    commit(); // Writes made after finish(), from a progress callback, with their changes
+                } else {
+                    conn.rollback();
+                    if (feed != null) {
+                        feed.discard();
+                    }
+                }
+            }
+        } finally {
+            restoreAutoCommit();
+        }
+    }
+
+    private void restoreAutoCommit() throws SQLException {
+        if (ownsTransaction) {
+            conn.setAutoCommit(true);
+        }
+    }
+}
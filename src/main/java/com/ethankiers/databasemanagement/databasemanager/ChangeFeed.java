@@ -0,0 +1,293 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change records of the writes made through one manager, numbered in commit order and kept in a ring buffer
+ * of the most recent ones. Writers record changes while they hold the write lease, {@link #flush(Connection)}
+ * numbers them (and writes them to the change log table inside the writer's transaction when the feed is
+ * persistent), and {@link #publish()} makes them readable once that transaction has committed.
+ * Records older than the ring are read back from the change log, or are lost when there is none.
+ */
+final class ChangeFeed {
+
+    // Internal tables start with _dbm_ and are left out of getTables()
+    static final String TABLE = "_dbm_change_log";
+
+    private static final String INSERT = "INSERT INTO " + TABLE +
+            " (seq, changed_at, table_name, change_type, key_column, key_value, row_values, row_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+
+    private final ConnectionPool pool;
+    private final boolean persistent;
+    private final ChangeRecord[] ring;
+    private int ringStart = 0;
+    private int ringSize = 0;
+    // Highest published sequence and the next one to hand out
+    private long latestSequence;
+    private long nextSequence;
+    // Recorded but not numbered yet, and numbered but not committed yet
+    private final List<ChangeRecord> pending = new ArrayList<>();
+    private final List<ChangeRecord> flushed = new ArrayList<>();
+    // Index in pending of the BULK record of each table whose row records were folded into one
+    private final Map<String, Integer> collapsed = new HashMap<>();
+
+    // writer is the writer connection, used to create the change log and continue its numbering
+    ChangeFeed(ConnectionPool pool, Connection writer, int capacity, boolean persistent) throws SQLException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Change feed capacity must be at least 1.");
+        }
+        this.pool = pool;
+        this.persistent = persistent;
+        this.ring = new ChangeRecord[capacity];
+
+        if (persistent) {
+            try (Statement stmt = writer.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (seq INTEGER PRIMARY KEY, changed_at INTEGER NOT NULL, " +
+                        "table_name TEXT NOT NULL, change_type TEXT NOT NULL, key_column TEXT, key_value TEXT, " +
+                        "row_values TEXT, row_count INTEGER NOT NULL);");
+                try (ResultSet rs = stmt.executeQuery("SELECT coalesce(max(seq), 0) FROM " + TABLE + ";")) {
+                    latestSequence = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        }
+        nextSequence = latestSequence + 1;
+    }
+
+    synchronized void record(ChangeRecord.Type type, String tableName, String keyColumn, String keyValue,
+                             List<String> values, long rowCount) {
+        Integer bulk = collapsed.get(tableName);
+        if (bulk != null) {
+            ChangeRecord folded = pending.get(bulk);
+            pending.set(bulk, new ChangeRecord(0, folded.getTimestamp(), ChangeRecord.Type.BULK, tableName,
+                    null, null, null, folded.getRowCount() + rowCount));
+            return;
+        }
+        pending.add(new ChangeRecord(0, System.currentTimeMillis(), type, tableName, keyColumn, keyValue, values, rowCount));
+        if (pending.size() > ring.length) {
+            collapsePending();
+        }
+    }
+
+    // A transaction that changed more rows than the ring holds would only push out every older record,
+    // so its row records are folded into one BULK record per table, later changes to those tables are added to it
+    private void collapsePending() {
+        Map<String, Long> rowsByTable = new LinkedHashMap<>();
+        for (ChangeRecord change : pending) {
+            rowsByTable.merge(change.getTableName(), change.getRowCount(), Long::sum);
+        }
+        pending.clear();
+        for (Map.Entry<String, Long> table : rowsByTable.entrySet()) {
+            collapsed.put(table.getKey(), pending.size());
+            pending.add(new ChangeRecord(0, System.currentTimeMillis(), ChangeRecord.Type.BULK, table.getKey(),
+                    null, null, null, table.getValue()));
+        }
+    }
+
+    // Numbers the recorded changes and writes them to the change log on conn, inside its current transaction
+    synchronized void flush(Connection conn) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int first = flushed.size();
+        for (ChangeRecord change : pending) {
+            flushed.add(change.withSequence(nextSequence++));
+        }
+        pending.clear();
+        collapsed.clear();
+
+        if (persistent) {
+            try (PreparedStatement pst = conn.prepareStatement(INSERT)) {
+                for (int i = first; i < flushed.size(); i++) {
+                    ChangeRecord change = flushed.get(i);
+                    pst.setLong(1, change.getSequence());
+                    pst.setLong(2, change.getTimestamp());
+                    pst.setString(3, change.getTableName());
+                    pst.setString(4, change.getType().name());
+                    pst.setString(5, change.getKeyColumn());
+                    pst.setString(6, change.getKeyValue());
+                    pst.setString(7, change.getValues().isEmpty() ? null : encodeValues(change.getValues()));
+                    pst.setLong(8, change.getRowCount());
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+            }
+        }
+    }
+
+    // Called once the transaction holding the flushed changes has committed
+    synchronized void publish() {
+        for (ChangeRecord change : flushed) {
+            int end = (ringStart + ringSize) % ring.length;
+            ring[end] = change;
+            if (ringSize < ring.length) {
+                ringSize++;
+            } else {
+                ringStart = (ringStart + 1) % ring.length; // Overwrote the oldest record
+            }
+            latestSequence = change.getSequence();
+        }
+        if (!flushed.isEmpty()) {
+            flushed.clear();
+            notifyAll();
+        }
+    }
+
+    // Called when the transaction rolled back, its numbers are handed out again
+    synchronized void discard() {
+        if (!flushed.isEmpty()) {
+            nextSequence = flushed.get(0).getSequence();
+            flushed.clear();
+        }
+        pending.clear();
+        collapsed.clear();
+    }
+
+    // Runs a statement the caller would otherwise run in autocommit mode and records its change if it changed rows.
+    // With a change log both are committed in one transaction. Inside a transaction the caller opened the change
+    // is only recorded, the caller numbers and publishes it when it commits. Returns the update count
+    int executeUpdate(Connection conn, PreparedStatement pst, ChangeRecord.Type type, String tableName,
+                      String keyColumn, String keyValue, List<String> values) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        boolean ownsTransaction = persistent && autoCommit;
+        if (ownsTransaction) {
+            conn.setAutoCommit(false);
+        }
+        int rows;
+        try {
+            rows = pst.executeUpdate();
+            if (rows > 0) {
+                record(type, tableName, keyColumn, keyValue, values, rows);
+                if (autoCommit) {
+                    flush(conn);
+                }
+            }
+            if (ownsTransaction) {
+                conn.commit();
+            }
+        } catch (SQLException e) {
+            if (ownsTransaction) {
+                conn.rollback();
+            }
+            if (autoCommit) {
+                discard();
+            }
+            throw e;
+        } finally {
+            if (ownsTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+        if (autoCommit) {
+            publish();
+        }
+        return rows;
+    }
+
+    synchronized long getLatestSequence() {
+        return latestSequence;
+    }
+
+    // Up to maxRecords published changes after afterSequence, from the ring or else from the change log
+    List<ChangeRecord> read(long afterSequence, int maxRecords) throws SQLException {
+        long latest;
+        synchronized (this) {
+            latest = latestSequence;
+            if (afterSequence >= latest || maxRecords < 1) {
+                return new ArrayList<>();
+            }
+            long oldest = latest - ringSize + 1;
+            if (afterSequence + 1 >= oldest || !persistent) {
+                long from = Math.max(afterSequence + 1, oldest);
+                int count = (int) Math.min(maxRecords, latest - from + 1);
+                List<ChangeRecord> records = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    records.add(ring[(int) ((ringStart + (from - oldest) + i) % ring.length)]);
+                }
+                return records;
+            }
+        }
+
+        List<ChangeRecord> records = new ArrayList<>();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pst = lease.prepare("SELECT seq, changed_at, change_type, table_name, key_column, key_value, " +
+                    "row_values, row_count FROM " + TABLE + " WHERE seq > ? AND seq <= ? ORDER BY seq LIMIT ?;");
+            pst.setLong(1, afterSequence);
+            pst.setLong(2, latest);
+            pst.setInt(3, maxRecords);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    records.add(new ChangeRecord(rs.getLong(1), rs.getLong(2), ChangeRecord.Type.valueOf(rs.getString(3)),
+                            rs.getString(4), rs.getString(5), rs.getString(6), decodeValues(rs.getString(7)), rs.getLong(8)));
+                }
+            }
+        }
+        return records;
+    }
+
+    // Waits until a change after afterSequence is published, returns false when the timeout passed first
+    synchronized boolean await(long afterSequence, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (latestSequence <= afterSequence) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+        }
+        return true;
+    }
+
+    // Deletes logged changes up to and including throughSequence, the ring is not affected.
+    // The latest change is kept, the numbering continues from it after a restart
+    int trim(Connection conn, long throughSequence) throws SQLException {
+        if (!persistent) {
+            return 0;
+        }
+        try (PreparedStatement pst = conn.prepareStatement("DELETE FROM " + TABLE + " WHERE seq <= ? AND seq < (SELECT max(seq) FROM " + TABLE + ");")) {
+            pst.setLong(1, throughSequence);
+            return pst.executeUpdate();
+        }
+    }
+
+    // Each value is its length, a colon and the text, or a single '-' for null
+    static String encodeValues(List<String> values) {
+        StringBuilder encoded = new StringBuilder();
+        for (String value : values) {
+            if (value == null) {
+                encoded.append('-');
+            } else {
+                encoded.append(value.length()).append(':').append(value);
+            }
+        }
+        return encoded.toString();
+    }
+
+    static List<String> decodeValues(String encoded) {
+        List<String> values = new ArrayList<>();
+        if (encoded == null) {
+            return values;
+        }
+        int pos = 0;
+        while (pos < encoded.length()) {
+            if (encoded.charAt(pos) == '-') {
+                values.add(null);
+                pos++;
+                continue;
+            }
+            int colon = encoded.indexOf(':', pos);
+            int length = Integer.parseInt(encoded.substring(pos, colon));
+            values.add(encoded.substring(colon + 1, colon + 1 + length));
+            pos = colon + 1 + length;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One committed change read from the change feed, see {@link DatabaseManager#enableChangeFeed(int, boolean)}.
+ * Row changes name the key they were made by, bulk changes only say which table changed and how many rows were written.
+ */
+public final class ChangeRecord {
+
+    public enum Type {
+        // A row added by addRowToTable, values holds the row
+        INSERT,
+        // Rows matching the key replaced with values
+        UPDATE,
+        // Rows matching the key removed
+        DELETE,
+        // A row written by an incremental import, inserted or replaced on the key
+        UPSERT,
+        // Many rows written at once by an import or addRows, one record per commit. Read the table again
+        BULK
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Type type;
+    private final String tableName;
+    private final String keyColumn;
+    private final String keyValue;
+    private final List<String> values;
+    private final long rowCount;
+
+    ChangeRecord(long sequence, long timestamp, Type type, String tableName, String keyColumn, String keyValue,
+                 List<String> values, long rowCount) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.keyValue = keyValue;
+        // Values may be null, which List.copyOf does not allow
+        this.values = values == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(values));
+        this.rowCount = rowCount;
+    }
+
+    ChangeRecord withSequence(long sequence) {
+        return new ChangeRecord(sequence, timestamp, type, tableName, keyColumn, keyValue, values, rowCount);
+    }
+
+    // Numbered from 1 in commit order without gaps, a gap means records were dropped before they were read
+    public long getSequence() {
+        return sequence;
+    }
+
+    // Milliseconds since the epoch when the change was made
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    // Null for INSERT and BULK records
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public String getKeyValue() {
+        return keyValue;
+    }
+
+    // The new row for INSERT, UPDATE and UPSERT records, empty for DELETE and BULK
+    public List<String> getValues() {
+        return values;
+    }
+
+    // Rows the change affected. For BULK records the rows committed with the record
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + tableName + (keyColumn != null ? " " + keyColumn + "=" + keyValue : "") +
+                (values.isEmpty() ? "" : " " + values) + " (" + rowCount + " rows)";
+    }
+}
@@ -0,0 +1,64 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A reader of the change feed that remembers how far it got, created by {@link DatabaseManager#subscribeToChanges()}.
+ * Each poll returns the changes committed since the previous one, in commit order. Store {@link #getPosition()}
+ * to continue from the same place later with {@link DatabaseManager#subscribeToChanges(long)}.
+ * A subscription is not thread-safe, poll it from one thread at a time.
+ */
+public final class ChangeSubscription {
+
+    private static final Logger log = LogManager.getLogger(ChangeSubscription.class);
+
+    private final ChangeFeed feed;
+    private long position;
+    private boolean missedChanges = false;
+
+    ChangeSubscription(ChangeFeed feed, long position) {
+        this.feed = feed;
+        this.position = position;
+    }
+
+    // Returns up to maxRecords changes without waiting, an empty list when there are none
+    public List<ChangeRecord> poll(int maxRecords) {
+        List<ChangeRecord> records;
+        try {
+            records = feed.read(position, maxRecords);
+        } catch (SQLException e) {
+            log.error("Error reading change log: {}", e.getMessage(), e);
+            return new ArrayList<>();
+        }
+        if (!records.isEmpty()) {
+            missedChanges = records.get(0).getSequence() > position + 1;
+            position = records.get(records.size() - 1).getSequence();
+        }
+        return records;
+    }
+
+    // Waits up to timeout for the next change, then returns like poll(maxRecords)
+    public List<ChangeRecord> poll(int maxRecords, Duration timeout) throws InterruptedException {
+        if (!feed.await(position, timeout.toNanos())) {
+            return new ArrayList<>();
+        }
+        return poll(maxRecords);
+    }
+
+    // Sequence of the last change returned
+    public long getPosition() {
+        return position;
+    }
+
+    // True when changes before the records of the last poll were dropped from the feed before they were read,
+    // read the tables you follow again to catch up
+    public boolean hasMissedChanges() {
+        return missedChanges;
+    }
+}
@@ -0,0 +1,190 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.LocaleUtil;
+
+/**
+ * Type inference for imported sheets. Cell values become Long, Double, String or null,
+ * and a column is declared INTEGER or REAL only when every sampled value fits, otherwise TEXT.
+ * Values that do not fit a column's type later on are still stored, SQLite keeps them as TEXT.
+ */
+final class ColumnTypes {
+
+    // Rows looked at before a sheet's table is created
+    static final int SAMPLE_ROWS = 200;
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Largest whole number a double holds exactly
+    private static final double MAX_EXACT_LONG = 9007199254740992.0;
+
+    private ColumnTypes() {
+    }
+
+    static String inferSqlType(List<Object[]> sample, int column) {
+        boolean seen = false;
+        boolean allIntegers = true;
+        for (Object[] row : sample) {
+            Object value = column < row.length ? row[column] : null;
+            if (value == null) {
+                continue;
+            }
+            seen = true;
+            if (value instanceof Double) {
+                allIntegers = false;
+            } else if (!(value instanceof Long)) {
+                return "TEXT";
+            }
+        }
+        if (!seen) {
+            return "TEXT";
+        }
+        return allIntegers ? "INTEGER" : "REAL";
+    }
+
+    // Workbook cells keep their POI cell type, dates are stored as ISO-8601 text so they sort and compare
+    static Object cellValue(Cell cell) {
+        if (cell == null) {
+            return null;
+        }
+        CellType type = cell.getCellType() == CellType.FORMULA ? cell.getCachedFormulaResultType() : cell.getCellType();
+        switch (type) {
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    return formatDate(cell.getLocalDateTimeCellValue());
+                }
+                return numberValue(cell.getNumericCellValue());
+            case STRING:
+                return cell.getStringCellValue();
+            case BLANK:
+                return null;
+            default:
+                return cell.toString();
+        }
+    }
+
+    static Object numberValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_LONG) {
+            return (long) value;
+        }
+        return value;
+    }
+
+    // Delimited files only hold text, fields written like plain numbers become Long or Double.
+    // Leading zeros, a leading plus sign or surrounding spaces keep a field text, like codes such as "007"
+    static Object textValue(String text) {
+        int length = text.length();
+        int i = text.startsWith("-") ? 1 : 0;
+        int digitsStart = i;
+        while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        int integerDigits = i - digitsStart;
+        if (integerDigits == 0 || (integerDigits > 1 && text.charAt(digitsStart) == '0')) {
+            return text;
+        }
+        if (i == length) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return text; // Too large for INTEGER
+            }
+        }
+
+        if (text.charAt(i) == '.') {
+            int fractionStart = ++i;
+            while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                i++;
+            }
+            if (i == fractionStart) {
+                return text;
+            }
+        }
+        if (i < length && (text.charAt(i) == 'E' || text.charAt(i) == 'e')) {
+            i++;
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                i++;
+            }
+            if (i == exponentStart) {
+                return text;
+            }
+        }
+        if (i != length) {
+            return text;
+        }
+        double value = Double.parseDouble(text);
+        return Double.isInfinite(value) ? text : numberValue(value);
+    }
+
+    // Whether a double holds the integer exactly, larger ones are exported as text
+    static boolean fitsDouble(long value) {
+        return Math.abs((double) value) < MAX_EXACT_LONG;
+    }
+
+    static String formatDate(LocalDateTime value) {
+        if (value.toLocalTime().toSecondOfDay() == 0) {
+            return value.toLocalDate().toString();
+        }
+        return value.format(DATE_TIME);
+    }
+
+    /**
+     * Formatter for the streaming import that reports numeric cells by their stored value instead of
+     * their display format, and remembers that the last value it formatted was a number.
+     */
+    static final class RawNumberFormatter extends DataFormatter {
+        private boolean lastWasNumber = false;
+        private double lastNumber;
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                lastWasNumber = false;
+                return formatDate(DateUtil.getLocalDateTime(value));
+            }
+            lastWasNumber = true;
+            lastNumber = value;
+            return NumberToTextConverter.toText(value);
+        }
+
+        // Returns the value of the cell just formatted as Long or Double, or null when it was not a number
+        Object takeNumber() {
+            if (!lastWasNumber) {
+                return null;
+            }
+            lastWasNumber = false;
+            return numberValue(lastNumber);
+        }
+    }
+
+    /**
+     * Formatter for the untyped streaming imports that gives numeric cells the text the workbook import stores,
+     * which is what POI's {@code Cell.toString()} returns: {@code 12.0} for numbers and {@code dd-MMM-yyyy} for dates.
+     */
+    static final class CellTextFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                DateFormat format = new SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale());
+                format.setTimeZone(LocaleUtil.getUserTimeZone());
+                return format.format(DateUtil.getJavaDate(value));
+            }
+            return Double.toString(value);
+        }
+    }
+}
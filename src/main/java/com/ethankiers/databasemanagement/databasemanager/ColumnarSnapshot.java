@@ -0,0 +1,781 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * A read-only copy of some columns of a table laid out column by column, loaded with
+ * {@link DatabaseManager#loadColumnarSnapshot(String, List)}. INTEGER and REAL columns are kept in
+ * primitive arrays, text columns as one int code per row into a dictionary of their distinct values,
+ * stored as UTF-8 in off-heap memory. Aggregates split the rows across the common fork-join pool
+ * and run plain loops over the arrays, so a scan allocates a few objects per task and none per row.
+ * The snapshot does not follow later writes, load a new one to see them. It is safe to share between threads.
+ * Closing it frees the dictionaries at once, an unclosed snapshot frees them once it is garbage collected.
+ */
+public final class ColumnarSnapshot implements AutoCloseable {
+
+    // Rows scanned by one fork-join task
+    private static final int SPLIT_ROWS = 1 << 16;
+
+    // Frees the dictionaries of text columns that were never closed
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final String tableName;
+    private final List<String> columnNames;
+    // Column names are matched like SQLite matches them, without regard to case
+    private final Map<String, Column> columns = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final int rowCount;
+    private volatile boolean closed = false;
+
+    ColumnarSnapshot(String tableName, List<String> columnNames, List<ColumnLoader> loaders, int rowCount) {
+        this.tableName = tableName;
+        this.columnNames = List.copyOf(columnNames);
+        this.rowCount = rowCount;
+        try {
+            for (int i = 0; i < columnNames.size(); i++) {
+                columns.put(columnNames.get(i), loaders.get(i).finish());
+            }
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getColumns() {
+        return columnNames;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    // How the column is stored: INTEGER, REAL or TEXT. A column declared numeric that holds text is TEXT
+    public String getColumnType(String column) {
+        return column(column).type();
+    }
+
+    // The value of one row as text, null for NULL
+    public String getValue(int row, String column) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return column(column).value(row);
+    }
+
+    // Bytes held outside the Java heap by the dictionaries of the text columns
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (Column column : columns.values()) {
+            bytes += column.offHeapBytes();
+        }
+        return bytes;
+    }
+
+    // Rows where the column is not NULL
+    public long count(String column) {
+        return column(column).count();
+    }
+
+    // Sum of the numeric values, text values that are not numbers are left out
+    public double sum(String column) {
+        return column(column).sum();
+    }
+
+    // Smallest numeric value, empty when the column has none
+    public OptionalDouble min(String column) {
+        return column(column).min();
+    }
+
+    public OptionalDouble max(String column) {
+        return column(column).max();
+    }
+
+    // Rows per distinct value, most frequent first. NULLs are counted under the null key
+    public Map<String, Long> countBy(String column) {
+        Groups groups = column(column).groups();
+        int[] codes = groups.codes();
+        long[] counts = scan(rowCount, splitRows(groups.labels().length), (from, to) -> {
+            long[] partial = new long[groups.labels().length + 1];
+            for (int i = from; i < to; i++) {
+                partial[codes[i] + 1]++; // NULL rows have code -1
+            }
+            return partial;
+        }, ColumnarSnapshot::addCounts);
+
+        List<Integer> order = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                order.add(code);
+            }
+        }
+        order.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int code : order) {
+            result.put(code == 0 ? null : groups.labels()[code - 1], counts[code]);
+        }
+        return result;
+    }
+
+    // Sum of valueColumn per distinct value of groupColumn, groups with the most numeric values first.
+    // Groups without numeric values are left out
+    public Map<String, Double> sumBy(String groupColumn, String valueColumn) {
+        Groups groups = column(groupColumn).groups();
+        Column values = column(valueColumn);
+        int[] codes = groups.codes();
+        int size = groups.labels().length + 1;
+        // Sums and counts of numeric values side by side, counts at size + code
+        double[] totals = scan(rowCount, splitRows(size), (from, to) -> {
+            double[] partial = new double[size * 2];
+            for (int i = from; i < to; i++) {
+                double value = values.number(i);
+                if (!Double.isNaN(value)) {
+                    partial[codes[i] + 1] += value;
+                    partial[size + codes[i] + 1]++;
+                }
+            }
+            return partial;
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        });
+
+        List<Integer> order = new ArrayList<>();
+        for (int code = 0; code < size; code++) {
+            if (totals[size + code] > 0) {
+                order.add(code);
+            }
+        }
+        order.sort((a, b) -> Double.compare(totals[size + b], totals[size + a]));
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int code : order) {
+            result.put(code == 0 ? null : groups.labels()[code - 1], totals[code]);
+        }
+        return result;
+    }
+
+    // Frees the off-heap dictionaries, the snapshot cannot be read afterwards. Close it once no thread is using it
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Column column : columns.values()) {
+            column.close();
+        }
+    }
+
+    private Column column(String name) {
+        if (closed) {
+            throw new IllegalStateException("The snapshot of " + tableName + " is closed.");
+        }
+        Column column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Column " + name + " is not in the snapshot of " + tableName + ".");
+        }
+        return column;
+    }
+
+    // Per-task arrays as large as the dictionary would cost more than the scan, so large dictionaries get fewer tasks
+    private static int splitRows(int groups) {
+        return Math.max(SPLIT_ROWS, groups * 8);
+    }
+
+    private static long[] addCounts(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    interface RangeScan<T> {
+        T scan(int from, int to);
+    }
+
+    private static <T> T scan(int rows, int splitRows, RangeScan<T> scan, BinaryOperator<T> merge) {
+        if (rows <= splitRows) {
+            return scan.scan(0, rows);
+        }
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(scan, merge, splitRows, 0, rows));
+    }
+
+    // Halves its range until it is small enough to scan, then merges the halves.
+    // RecursiveTask is Serializable, but tasks only live inside one scan and are never serialized
+    @SuppressWarnings("serial")
+    private static final class ScanTask<T> extends RecursiveTask<T> {
+        private final RangeScan<T> scan;
+        private final BinaryOperator<T> merge;
+        private final int splitRows;
+        private final int from;
+        private final int to;
+
+        ScanTask(RangeScan<T> scan, BinaryOperator<T> merge, int splitRows, int from, int to) {
+            this.scan = scan;
+            this.merge = merge;
+            this.splitRows = splitRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= splitRows) {
+                return scan.scan(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<T> left = new ScanTask<>(scan, merge, splitRows, from, middle);
+            left.fork();
+            T right = new ScanTask<>(scan, merge, splitRows, middle, to).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    // Group codes per row (-1 for NULL) and the text of each code
+    record Groups(int[] codes, String[] labels) {
+    }
+
+    private abstract static class Column {
+        final int rows;
+
+        Column(int rows) {
+            this.rows = rows;
+        }
+
+        abstract String type();
+
+        abstract String value(int row);
+
+        // The row as a number, NaN for NULL and for text that is not a number
+        abstract double number(int row);
+
+        abstract long count();
+
+        abstract double sum();
+
+        abstract OptionalDouble min();
+
+        abstract OptionalDouble max();
+
+        abstract Groups groups();
+
+        long offHeapBytes() {
+            return 0;
+        }
+
+        void close() {
+        }
+    }
+
+    // NULL rows hold 0 in the value array and have their bit set in nulls, which is null when there are none
+    private abstract static class NumericColumn extends Column {
+        final long[] nulls;
+        final int nullCount;
+        private volatile Groups groups;
+
+        NumericColumn(int rows, long[] nulls, int nullCount) {
+            super(rows);
+            this.nulls = nullCount > 0 ? nulls : null;
+            this.nullCount = nullCount;
+        }
+
+        final boolean isNull(int row) {
+            return nulls != null && (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        @Override
+        long count() {
+            return rows - nullCount;
+        }
+
+        abstract Object key(int row);
+
+        // Built on first use and kept, the distinct values of a numeric column are only needed for grouping
+        @Override
+        Groups groups() {
+            Groups current = groups;
+            if (current == null) {
+                Map<Object, Integer> codesByValue = new HashMap<>();
+                List<String> labels = new ArrayList<>();
+                int[] codes = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (isNull(i)) {
+                        codes[i] = -1;
+                        continue;
+                    }
+                    Object key = key(i);
+                    Integer code = codesByValue.get(key);
+                    if (code == null) {
+                        code = labels.size();
+                        codesByValue.put(key, code);
+                        labels.add(key.toString());
+                    }
+                    codes[i] = code;
+                }
+                current = new Groups(codes, labels.toArray(new String[0]));
+                groups = current;
+            }
+            return current;
+        }
+    }
+
+    private static final class LongColumn extends NumericColumn {
+        private final long[] values;
+
+        LongColumn(int rows, long[] values, long[] nulls, int nullCount) {
+            super(rows, nulls, nullCount);
+            this.values = values;
+        }
+
+        @Override
+        String type() {
+            return "INTEGER";
+        }
+
+        @Override
+        String value(int row) {
+            return isNull(row) ? null : Long.toString(values[row]);
+        }
+
+        @Override
+        double number(int row) {
+            return isNull(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        Object key(int row) {
+            return values[row];
+        }
+
+        // NULL rows hold 0, so the loop needs no check. Summed as doubles, a long sum can overflow on large values
+        @Override
+        double sum() {
+            return scan(rows, SPLIT_ROWS, (from, to) -> {
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += values[i];
+                }
+                return sum;
+            }, Double::sum);
+        }
+
+        @Override
+        OptionalDouble min() {
+            return extreme(true);
+        }
+
+        @Override
+        OptionalDouble max() {
+            return extreme(false);
+        }
+
+        private OptionalDouble extreme(boolean min) {
+            if (count() == 0) {
+                return OptionalDouble.empty();
+            }
+            long result = scan(rows, SPLIT_ROWS, (from, to) -> {
+                long best = min ? Long.MAX_VALUE : Long.MIN_VALUE;
+                if (nulls == null) {
+                    for (int i = from; i < to; i++) {
+                        best = min ? Math.min(best, values[i]) : Math.max(best, values[i]);
+                    }
+                } else {
+                    for (int i = from; i < to; i++) {
+                        if (!isNull(i)) {
+                            best = min ? Math.min(best, values[i]) : Math.max(best, values[i]);
+                        }
+                    }
+                }
+                return best;
+            }, min ? Math::min : Math::max);
+            return OptionalDouble.of(result);
+        }
+    }
+
+    private static final class DoubleColumn extends NumericColumn {
+        private final double[] values;
+
+        DoubleColumn(int rows, double[] values, long[] nulls, int nullCount) {
+            super(rows, nulls, nullCount);
+            this.values = values;
+        }
+
+        @Override
+        String type() {
+            return "REAL";
+        }
+
+        @Override
+        String value(int row) {
+            return isNull(row) ? null : Double.toString(values[row]);
+        }
+
+        @Override
+        double number(int row) {
+            return isNull(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        Object key(int row) {
+            return values[row];
+        }
+
+        @Override
+        double sum() {
+            return scan(rows, SPLIT_ROWS, (from, to) -> {
+                double sum = 0;
+                for (int i = from; i < to; i++) {
+                    sum += values[i];
+                }
+                return sum;
+            }, Double::sum);
+        }
+
+        @Override
+        OptionalDouble min() {
+            return extreme(true);
+        }
+
+        @Override
+        OptionalDouble max() {
+            return extreme(false);
+        }
+
+        private OptionalDouble extreme(boolean min) {
+            if (count() == 0) {
+                return OptionalDouble.empty();
+            }
+            double result = scan(rows, SPLIT_ROWS, (from, to) -> {
+                double best = min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    if (nulls == null || !isNull(i)) {
+                        best = min ? Math.min(best, values[i]) : Math.max(best, values[i]);
+                    }
+                }
+                return best;
+            }, min ? Math::min : Math::max);
+            return OptionalDouble.of(result);
+        }
+    }
+
+    // Rows hold codes into the dictionary, whose UTF-8 entries sit back to back in a segment of the column's own arena.
+    // The arena is closed by close() or, for a column nobody closed, by the cleaner once the column is unreachable
+    private static final class TextColumn extends Column {
+        private final int[] codes;
+        private final MemorySegment dictionary;
+        private final Cleaner.Cleanable cleanable;
+        // Entry i spans offsets[i] to offsets[i + 1]
+        private final long[] offsets;
+        private final int nullCount;
+        private volatile double[] numbers;
+        private volatile String[] labels;
+
+        TextColumn(int rows, int[] codes, List<String> entries, int nullCount) {
+            super(rows);
+            this.codes = codes;
+            this.nullCount = nullCount;
+
+            List<byte[]> encoded = new ArrayList<>(entries.size());
+            long size = 0;
+            for (String entry : entries) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                size += bytes.length;
+            }
+            Arena arena = Arena.ofShared();
+            try {
+                this.dictionary = arena.allocate(size, 1);
+            } catch (RuntimeException | Error e) {
+                arena.close();
+                throw e;
+            }
+            this.cleanable = CLEANER.register(this, arena::close);
+            this.offsets = new long[entries.size() + 1];
+            for (int i = 0; i < encoded.size(); i++) {
+                byte[] bytes = encoded.get(i);
+                MemorySegment.copy(bytes, 0, dictionary, ValueLayout.JAVA_BYTE, offsets[i], bytes.length);
+                offsets[i + 1] = offsets[i] + bytes.length;
+            }
+        }
+
+        @Override
+        String type() {
+            return "TEXT";
+        }
+
+        // The fence keeps the cleaner from closing the arena while the entry is copied out
+        private String entry(int code) {
+            try {
+                byte[] bytes = dictionary.asSlice(offsets[code], offsets[code + 1] - offsets[code]).toArray(ValueLayout.JAVA_BYTE);
+                return new String(bytes, StandardCharsets.UTF_8);
+            } finally {
+                Reference.reachabilityFence(this);
+            }
+        }
+
+        @Override
+        String value(int row) {
+            return codes[row] < 0 ? null : entry(codes[row]);
+        }
+
+        // Each distinct value is parsed once, NaN when it is not a number
+        private double[] numbers() {
+            double[] current = numbers;
+            if (current == null) {
+                current = new double[offsets.length - 1];
+                for (int code = 0; code < current.length; code++) {
+                    Object value = ColumnTypes.textValue(entry(code).trim());
+                    current[code] = value instanceof Number number ? number.doubleValue() : Double.NaN;
+                }
+                numbers = current;
+            }
+            return current;
+        }
+
+        @Override
+        double number(int row) {
+            return codes[row] < 0 ? Double.NaN : numbers()[codes[row]];
+        }
+
+        @Override
+        long count() {
+            return rows - nullCount;
+        }
+
+        // Rows per code, the numeric aggregates are computed from it instead of from every row
+        private long[] histogram() {
+            int size = offsets.length - 1;
+            return scan(rows, splitRows(size), (from, to) -> {
+                long[] counts = new long[size];
+                for (int i = from; i < to; i++) {
+                    int code = codes[i];
+                    if (code >= 0) {
+                        counts[code]++;
+                    }
+                }
+                return counts;
+            }, ColumnarSnapshot::addCounts);
+        }
+
+        @Override
+        double sum() {
+            long[] counts = histogram();
+            double[] values = numbers();
+            double sum = 0;
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0 && !Double.isNaN(values[code])) {
+                    sum += counts[code] * values[code];
+                }
+            }
+            return sum;
+        }
+
+        @Override
+        OptionalDouble min() {
+            return extreme(true);
+        }
+
+        @Override
+        OptionalDouble max() {
+            return extreme(false);
+        }
+
+        private OptionalDouble extreme(boolean min) {
+            long[] counts = histogram();
+            double[] values = numbers();
+            OptionalDouble best = OptionalDouble.empty();
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0 && !Double.isNaN(values[code]) &&
+                        (best.isEmpty() || (min ? values[code] < best.getAsDouble() : values[code] > best.getAsDouble()))) {
+                    best = OptionalDouble.of(values[code]);
+                }
+            }
+            return best;
+        }
+
+        @Override
+        Groups groups() {
+            String[] current = labels;
+            if (current == null) {
+                current = new String[offsets.length - 1];
+                for (int code = 0; code < current.length; code++) {
+                    current[code] = entry(code);
+                }
+                labels = current;
+            }
+            return new Groups(codes, current);
+        }
+
+        @Override
+        long offHeapBytes() {
+            return dictionary.byteSize();
+        }
+
+        @Override
+        void close() {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * Collects one column while its rows are read. Columns declared INTEGER or REAL start as whole numbers,
+     * become REAL when a fraction shows up and TEXT when a value is not a number (SQLite allows both),
+     * other columns are TEXT from the start.
+     */
+    static final class ColumnLoader {
+        private static final int LONG = 0;
+        private static final int DOUBLE = 1;
+        private static final int TEXT = 2;
+
+        private int kind;
+        private int size = 0;
+        private long[] longs;
+        private double[] doubles;
+        private int[] codes;
+        private long[] nulls;
+        private int nullCount = 0;
+        private Map<String, Integer> dictionary;
+        private List<String> entries;
+
+        ColumnLoader(String declaredType, int expectedRows) {
+            String type = declaredType == null ? "" : declaredType.toUpperCase();
+            boolean numeric = type.contains("INT") || type.contains("REAL") || type.contains("FLOA") ||
+                    type.contains("DOUB") || type.contains("NUM") || type.contains("DEC");
+            int capacity = Math.max(expectedRows, 16);
+            if (numeric) {
+                kind = LONG;
+                longs = new long[capacity];
+                // Text columns mark NULL rows with code -1 instead
+                nulls = new long[(capacity + 63) >>> 6];
+            } else {
+                kind = TEXT;
+                codes = new int[capacity];
+                dictionary = new HashMap<>();
+                entries = new ArrayList<>();
+            }
+        }
+
+        void add(ResultSet rs, int column) throws SQLException {
+            ensureCapacity();
+            if (kind == TEXT) {
+                addText(rs.getString(column));
+                return;
+            }
+            Object value = rs.getObject(column);
+            if (value == null) {
+                nulls[size >>> 6] |= 1L << size;
+                nullCount++;
+                size++; // The value array already holds 0
+            } else if (value instanceof Integer || value instanceof Long) {
+                long number = ((Number) value).longValue();
+                if (kind == LONG) {
+                    longs[size++] = number;
+                } else {
+                    doubles[size++] = number;
+                }
+            } else if (value instanceof Double number) {
+                if (kind == LONG) {
+                    toDoubles();
+                }
+                doubles[size++] = number;
+            } else {
+                toText();
+                addText(rs.getString(column));
+            }
+        }
+
+        private void addText(String value) {
+            if (value == null) {
+                nullCount++;
+                codes[size++] = -1;
+                return;
+            }
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = entries.size();
+                dictionary.put(value, code);
+                entries.add(value);
+            }
+            codes[size++] = code;
+        }
+
+        private void ensureCapacity() {
+            int capacity = kind == LONG ? longs.length : kind == DOUBLE ? doubles.length : codes.length;
+            if (size < capacity) {
+                return;
+            }
+            int grown = capacity * 2;
+            if (kind == LONG) {
+                longs = Arrays.copyOf(longs, grown);
+            } else if (kind == DOUBLE) {
+                doubles = Arrays.copyOf(doubles, grown);
+            } else {
+                codes = Arrays.copyOf(codes, grown);
+            }
+            if (nulls != null) {
+                nulls = Arrays.copyOf(nulls, (grown + 63) >>> 6);
+            }
+        }
+
+        private void toDoubles() {
+            doubles = new double[longs.length];
+            for (int i = 0; i < size; i++) {
+                doubles[i] = longs[i];
+            }
+            longs = null;
+            kind = DOUBLE;
+        }
+
+        // Numbers read so far become their text, the way SQLite shows them
+        private void toText() {
+            int[] textCodes = new int[kind == LONG ? longs.length : doubles.length];
+            dictionary = new HashMap<>();
+            entries = new ArrayList<>();
+            int rows = size;
+            int nullRows = nullCount;
+            codes = textCodes;
+            size = 0;
+            nullCount = 0;
+            int previousKind = kind;
+            kind = TEXT;
+            for (int i = 0; i < rows; i++) {
+                boolean isNull = (nulls[i >>> 6] & (1L << i)) != 0;
+                addText(isNull ? null : previousKind == LONG ? Long.toString(longs[i]) : Double.toString(doubles[i]));
+            }
+            assert nullCount == nullRows;
+            longs = null;
+            doubles = null;
+            nulls = null;
+        }
+
+        Column finish() {
+            return switch (kind) {
+                case LONG -> new LongColumn(size, longs, nulls, nullCount);
+                case DOUBLE -> new DoubleColumn(size, doubles, nulls, nullCount);
+                default -> new TextColumn(size, codes, entries, nullCount);
+            };
+        }
+    }
+}
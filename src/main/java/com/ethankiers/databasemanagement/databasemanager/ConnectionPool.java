@@ -0,0 +1,323 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One writer connection and any number of reader connections to the same SQLite file.
+ * Writers queue on a fair lock so writes run one at a time in arrival order, readers take
+ * a free reader connection and run in parallel. With readers the database is switched to WAL
+ * so reads do not block on the writer. Without readers every read runs on the writer connection.
+ * A thread that already holds a reader (an open stream, or a read made from a stream's callback) gets the same
+ * reader again for nested reads, so it never waits for a second reader that only it could give back.
+ * Each connection has its own statement cache, caches are cleared lazily after a schema change.
+ * A {@link TuningProfile} given when opening is applied to the file and to every connection.
+ */
+final class ConnectionPool implements AutoCloseable {
+
+    static final int STATEMENT_CACHE_SIZE = 64;
+    // How long changing the connection settings waits for every reader to be free
+    static final int READER_WAIT_SECONDS = 30;
+
+    private static final class PooledConnection {
+        final Connection conn;
+        final StatementCache statements;
+        int schemaVersion;
+
+        PooledConnection(Connection conn, int schemaVersion) {
+            this.conn = conn;
+            this.statements = new StatementCache(conn, STATEMENT_CACHE_SIZE);
+            this.schemaVersion = schemaVersion;
+        }
+    }
+
+    /**
+     * A connection borrowed from the pool, closing it gives the connection back.
+     */
+    final class Lease implements AutoCloseable {
+        private final PooledConnection pooled;
+        private final boolean writer;
+        // Thread the reader is held for, a stream may be closed from another thread
+        private final Thread holder;
+        private boolean released = false;
+
+        private Lease(PooledConnection pooled, boolean writer, Thread holder) {
+            this.pooled = pooled;
+            this.writer = writer;
+            this.holder = holder;
+        }
+
+        Connection connection() {
+            return pooled.conn;
+        }
+
+        boolean isWriter() {
+            return writer;
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            return pooled.statements.prepare(sql);
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (writer) {
+                writeLock.unlock();
+            } else {
+                releaseReader(holder);
+            }
+        }
+    }
+
+    // A reader and the number of open leases its thread has on it
+    private static final class HeldReader {
+        final PooledConnection pooled;
+        int leases = 1;
+
+        HeldReader(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    private final PooledConnection writer;
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private final BlockingQueue<PooledConnection> idleReaders;
+    // Guarded by itself, only the thread a reader is held for adds to its count
+    private final Map<Thread, HeldReader> heldReaders = new HashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final AtomicInteger schemaVersion = new AtomicInteger();
+
+    ConnectionPool(String url, int readerCount) throws SQLException {
+        this(url, readerCount, null);
+    }
+
+    ConnectionPool(String url, int readerCount, TuningProfile profile) throws SQLException {
+        if (readerCount < 0) {
+            throw new IllegalArgumentException("Reader count cannot be negative.");
+        }
+        writer = new PooledConnection(DriverManager.getConnection(url), 0);
+        idleReaders = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+
+        try {
+            try (Statement stmt = writer.conn.createStatement()) {
+                if (profile != null) {
+                    execute(stmt, profile.databasePragmas());
+                    execute(stmt, profile.connectionPragmas());
+                } else if (readerCount > 0) {
+                    stmt.execute("PRAGMA journal_mode=WAL;");
+                }
+                if (readerCount > 0) {
+                    stmt.execute("PRAGMA busy_timeout=5000;");
+                }
+            }
+            for (int i = 0; i < readerCount; i++) {
+                Connection conn = DriverManager.getConnection(url);
+                PooledConnection reader = new PooledConnection(conn, 0);
+                readers.add(reader);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA query_only=1;");
+                    stmt.execute("PRAGMA busy_timeout=5000;");
+                    if (profile != null) {
+                        execute(stmt, readerPragmas(profile.connectionPragmas()));
+                    }
+                }
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Blocks until a reader connection is free, uses the writer when the pool has no readers.
+    // Reuses the reader the thread already holds, SQLite runs the nested statements next to the open ones
+    Lease read() throws SQLException {
+        if (readers.isEmpty() || writeLock.isHeldByCurrentThread()) {
+            return write();
+        }
+        Thread thread = Thread.currentThread();
+        synchronized (heldReaders) {
+            HeldReader held = heldReaders.get(thread);
+            if (held != null) {
+                held.leases++;
+                refresh(held.pooled);
+                return new Lease(held.pooled, false, thread);
+            }
+        }
+        try {
+            PooledConnection reader = idleReaders.take();
+            synchronized (heldReaders) {
+                heldReaders.put(thread, new HeldReader(reader));
+            }
+            refresh(reader);
+            return new Lease(reader, false, thread);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection.", e);
+        }
+    }
+
+    // Blocks until every earlier writer is done, the writer lock is reentrant for nested calls
+    Lease write() throws SQLException {
+        try {
+            writeLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection.", e);
+        }
+        refresh(writer);
+        return new Lease(writer, true, null);
+    }
+
+    // The reader goes back to the pool when the last lease its thread holds on it is closed
+    private void releaseReader(Thread holder) {
+        HeldReader held;
+        synchronized (heldReaders) {
+            held = heldReaders.get(holder);
+            if (--held.leases > 0) {
+                return;
+            }
+            heldReaders.remove(holder);
+        }
+        idleReaders.add(held.pooled);
+    }
+
+    // Statements prepared before a schema change may report stale columns
+    void schemaChanged() {
+        schemaVersion.incrementAndGet();
+        if (writeLock.isHeldByCurrentThread()) {
+            refresh(writer);
+        }
+    }
+
+    // The writer's per-connection settings, as the PRAGMA statements that bring them back
+    List<String> currentPragmas() throws SQLException {
+        List<String> pragmas = new ArrayList<>();
+        try (Lease lease = write();
+             Statement stmt = lease.connection().createStatement()) {
+            for (String name : List.of("synchronous", "cache_size", "mmap_size", "temp_store")) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + name + ";")) {
+                    // mmap_size reports nothing when memory mapping is not available
+                    pragmas.add("PRAGMA " + name + "=" + (rs.next() ? rs.getString(1) : "0") + ";");
+                }
+            }
+        }
+        return pragmas;
+    }
+
+    // Runs per-connection PRAGMAs on the writer and every reader, waiting for running reads and writes to finish.
+    // The readers are collected before the write lock is taken, a thread holding a stream can still write and
+    // then close its stream. Fails when this thread holds a reader or the readers stay busy for too long
+    void applyPragmas(List<String> pragmas) throws SQLException {
+        synchronized (heldReaders) {
+            if (heldReaders.containsKey(Thread.currentThread())) {
+                throw new SQLException("Close the open streams on this thread before changing the connection settings.");
+            }
+        }
+        List<PooledConnection> taken = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers.size(); i++) {
+                PooledConnection reader = idleReaders.poll(READER_WAIT_SECONDS, TimeUnit.SECONDS);
+                if (reader == null) {
+                    throw new SQLException("Timed out after " + READER_WAIT_SECONDS
+                            + " seconds waiting for the reader connections, a stream may have been left open.");
+                }
+                taken.add(reader);
+            }
+            try (Lease lease = write();
+                 Statement stmt = lease.connection().createStatement()) {
+                execute(stmt, pragmas);
+                for (PooledConnection reader : taken) {
+                    try (Statement readerStmt = reader.conn.createStatement()) {
+                        execute(readerStmt, readerPragmas(pragmas));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the reader connections.", e);
+        } finally {
+            idleReaders.addAll(taken);
+        }
+    }
+
+    private static void execute(Statement stmt, List<String> pragmas) throws SQLException {
+        for (String pragma : pragmas) {
+            stmt.execute(pragma);
+        }
+    }
+
+    // Readers are query_only and never sync, synchronous is left at its default there
+    private static List<String> readerPragmas(List<String> pragmas) {
+        List<String> readerPragmas = new ArrayList<>();
+        for (String pragma : pragmas) {
+            if (!pragma.startsWith("PRAGMA synchronous")) {
+                readerPragmas.add(pragma);
+            }
+        }
+        return readerPragmas;
+    }
+
+    boolean isPooled() {
+        return !readers.isEmpty();
+    }
+
+    long getStatementCacheHits() {
+        long hits = writer.statements.getHits();
+        for (PooledConnection reader : readers) {
+            hits += reader.statements.getHits();
+        }
+        return hits;
+    }
+
+    long getStatementCacheMisses() {
+        long misses = writer.statements.getMisses();
+        for (PooledConnection reader : readers) {
+            misses += reader.statements.getMisses();
+        }
+        return misses;
+    }
+
+    private void refresh(PooledConnection pooled) {
+        int version = schemaVersion.get();
+        if (pooled.schemaVersion != version) {
+            pooled.statements.clear();
+            pooled.schemaVersion = version;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        List<PooledConnection> all = new ArrayList<>(readers);
+        all.add(writer);
+        for (PooledConnection pooled : all) {
+            try {
+                pooled.statements.close();
+                pooled.conn.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
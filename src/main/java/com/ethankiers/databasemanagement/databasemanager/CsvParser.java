@@ -0,0 +1,212 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokenizes RFC 4180 delimited text read from a channel through one large reused buffer.
+ * Input is scanned as UTF-8 bytes, which is safe because the delimiter, quote and line breaks are ASCII,
+ * and each field becomes a String straight from the buffer unless it spans a refill or holds escaped quotes.
+ * The first record is the header, the same way the sheet imports treat their first row. Blank lines are skipped,
+ * except after a single-column header, where they are rows holding NULL the way the exporter writes them.
+ * A record with more fields than the header is cut off and a shorter one is padded with nulls.
+ */
+final class CsvParser {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final byte delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    // Bytes of the current field when it could not be taken from the buffer in one piece
+    private byte[] field = new byte[256];
+    private int fieldLength = 0;
+    private final List<String> record = new ArrayList<>();
+
+    CsvParser(ReadableByteChannel channel, char delimiter) {
+        if (delimiter > 127 || delimiter == '"' || delimiter == '\r' || delimiter == '\n') {
+            throw new IllegalArgumentException("Delimiter must be an ASCII character other than a quote or line break.");
+        }
+        this.channel = channel;
+        this.delimiter = (byte) delimiter;
+    }
+
+    // With typed set, fields that look like numbers are handed on as Long or Double
+    void parse(StreamingSheetHandler.RowListener listener, boolean typed) throws IOException, SQLException {
+        skipByteOrderMark();
+
+        List<String> headers = null;
+        while (readRecord()) {
+            // A blank line is one empty field, in a single-column file that is a row holding NULL
+            if (record.size() == 1 && record.get(0) == null && (headers == null || headers.size() != 1)) {
+                continue; // Blank line
+            }
+            if (headers == null) {
+                // Header fields are read left to right until the first empty one, like the sheet imports
+                headers = new ArrayList<>();
+                for (String name : record) {
+                    if (name == null || name.isBlank()) {
+                        break;
+                    }
+                    headers.add(name.trim());
+                }
+                listener.onHeader(headers);
+                continue;
+            }
+
+            Object[] values = new Object[headers.size()];
+            int count = Math.min(values.length, record.size());
+            for (int i = 0; i < count; i++) {
+                String value = record.get(i);
+                values[i] = typed && value != null ? ColumnTypes.textValue(value) : value;
+            }
+            listener.onRow(values);
+        }
+    }
+
+    // Reads the next record into record, an unquoted empty field is null and a quoted one is ""
+    private boolean readRecord() throws IOException {
+        record.clear();
+        if (!fill()) {
+            return false;
+        }
+
+        while (true) {
+            String value;
+            if (fill() && buffer[pos] == '"') {
+                pos++;
+                value = readQuoted();
+            } else {
+                value = readUnquoted();
+            }
+            record.add(value);
+
+            if (!fill()) {
+                return true; // Last line without a line break
+            }
+            byte b = buffer[pos++];
+            if (b == delimiter) {
+                continue;
+            }
+            if (b == '\r' && fill() && buffer[pos] == '\n') {
+                pos++;
+            }
+            return true;
+        }
+    }
+
+    private String readUnquoted() throws IOException {
+        fieldLength = 0;
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                byte b = buffer[pos];
+                if (isTerminator(b)) {
+                    break;
+                }
+                pos++;
+            }
+            if (pos < limit) {
+                if (fieldLength == 0) {
+                    return pos == start ? null : new String(buffer, start, pos - start, StandardCharsets.UTF_8);
+                }
+                append(start, pos - start);
+                return new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+            }
+            append(start, pos - start); // The field may continue in the next buffer
+            if (!fill()) {
+                return fieldLength == 0 ? null : new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    // Reads up to the closing quote, "" inside the field is an escaped quote
+    private String readQuoted() throws IOException {
+        fieldLength = 0;
+        while (true) {
+            int start = pos;
+            while (pos < limit && buffer[pos] != '"') {
+                pos++;
+            }
+            if (pos == limit) {
+                append(start, pos - start);
+                if (!fill()) {
+                    break; // Unterminated quote, keep what was read
+                }
+                continue;
+            }
+
+            // At a quote, it either closes the field or escapes the next quote
+            if (fieldLength == 0 && pos + 1 < limit && isTerminator(buffer[pos + 1])) {
+                pos++;
+                return new String(buffer, start, pos - 1 - start, StandardCharsets.UTF_8);
+            }
+            append(start, pos - start);
+            pos++;
+            if (fill() && buffer[pos] == '"') {
+                append(pos, 1);
+                pos++;
+                continue;
+            }
+            break;
+        }
+
+        // Anything between the closing quote and the next delimiter is kept as it is
+        while (fill() && !isTerminator(buffer[pos])) {
+            append(pos, 1);
+            pos++;
+        }
+        return new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+    }
+
+    private boolean isTerminator(byte b) {
+        return b == delimiter || b == '\n' || b == '\r';
+    }
+
+    private void append(int start, int length) {
+        if (fieldLength + length > field.length) {
+            field = Arrays.copyOf(field, Math.max(field.length * 2, fieldLength + length));
+        }
+        System.arraycopy(buffer, start, field, fieldLength, length);
+        fieldLength += length;
+    }
+
+    // Makes sure at least one unread byte is buffered, returns false at the end of the input
+    private boolean fill() throws IOException {
+        if (pos < limit) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+        byteBuffer.clear();
+        int read;
+        do {
+            read = channel.read(byteBuffer);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        pos = 0;
+        limit = byteBuffer.position();
+        return true;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        if (fill() && limit - pos >= 3 && buffer[pos] == (byte) 0xEF && buffer[pos + 1] == (byte) 0xBB && buffer[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+    }
+}
@@ -2,38 +2,188 @@ package com.ethankiers.databasemanagement.databasemanager;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JRuntimeException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.*;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import java.util.List;
 import java.util.Scanner;
 
-public class DatabaseManager {
+public class DatabaseManager implements AutoCloseable {
 
     private static final Logger log = LogManager.getLogger(DatabaseManager.class);
-    private Connection conn;
+    // Reads run on pooled reader connections, writes are queued on the single writer connection
+    private ConnectionPool pool;
+    private SchemaCatalog catalog;
+
+    // Null while metrics are disabled, every instrumented call checks it once
+    private volatile DatabaseMetrics metrics;
+    private final List<MetricsListener> metricsListeners = new CopyOnWriteArrayList<>();
+
+    // Null while the row cache is disabled, getRow and getFilteredValues answer hits from it
+    private volatile RowCache rowCache;
+
+    // Null while the change feed is disabled, only replaced while holding the write lease
+    private volatile ChangeFeed changeFeed;
+
+    // Rows sent per executeBatch() for imports and addRows, and batches per commit for imports
+    private volatile int batchSize = 1000;
+    private volatile int batchesPerCommit = 10;
+
+    // Imports declare INTEGER/REAL columns and bind numbers when true, otherwise every column is TEXT
+    private volatile boolean inferColumnTypes = false;
+
+    // Rows fetched from SQLite at a time by the streaming queries
+    private volatile int fetchSize = 1000;
 
     public DatabaseManager(String filePath) {
+        this(filePath, 0);
+    }
+
+    // Opens one writer and readerCount reader connections, with readers the database is put in WAL mode
+    // so reads run in parallel with each other and with the writer
+    public DatabaseManager(String filePath, int readerCount) {
+        this(filePath, readerCount, null);
+    }
+
+    // Same as above and applies the PRAGMAs of a tuning profile to the database and every connection
+    public DatabaseManager(String filePath, int readerCount, TuningProfile profile) {
         String url = "jdbc:sqlite:" + filePath;
         try {
-            conn = DriverManager.getConnection(url);
+            pool = new ConnectionPool(url, readerCount, profile);
+            catalog = new SchemaCatalog(pool);
             System.out.println("Connected to database");
         } catch (SQLException e) {
-            System.out.println("Connection failed: " + e.getMessage());
+            log.error("Connection failed: {}", e.getMessage(), e);
         }
     }
+
+    // Starts a builder for a manager that needs more than the constructors take
+    public static Builder builder(String filePath) {
+        return new Builder(filePath);
+    }
+
+    /**
+     * Collects the connection and import settings of a {@link DatabaseManager} before opening it.
+     */
+    public static final class Builder {
+        private final String filePath;
+        private int readerCount = 0;
+        private TuningProfile profile;
+        private int batchSize = 1000;
+        private int batchesPerCommit = 10;
+        private int fetchSize = 1000;
+        private boolean inferColumnTypes = false;
+
+        private Builder(String filePath) {
+            this.filePath = filePath;
+        }
+
+        public Builder readers(int readerCount) {
+            this.readerCount = readerCount;
+            return this;
+        }
+
+        public Builder profile(TuningProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        // Takes a profile name such as "bulk-load", "read-heavy" or "durable"
+        public Builder profile(String profileName) {
+            return profile(TuningProfile.fromName(profileName));
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder batchesPerCommit(int batchesPerCommit) {
+            this.batchesPerCommit = batchesPerCommit;
+            return this;
+        }
+
+        public Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public Builder inferColumnTypes(boolean inferColumnTypes) {
+            this.inferColumnTypes = inferColumnTypes;
+            return this;
+        }
+
+        public DatabaseManager build() {
+            DatabaseManager manager = new DatabaseManager(filePath, readerCount, profile);
+            manager.setBatchSize(batchSize);
+            manager.setBatchesPerCommit(batchesPerCommit);
+            manager.setFetchSize(fetchSize);
+            manager.setInferColumnTypes(inferColumnTypes);
+            return manager;
+        }
+    }
+
+    // Applies the per-connection settings of a profile until the returned switch is closed, for example
+    // BULK_LOAD around a large import. Waits for running reads and writes before changing the connections,
+    // so it must not be called while this thread has streams open, and it waits for streams open on other threads
+    public ProfileSwitch useProfile(TuningProfile profile) throws SQLException {
+        List<String> previous = pool.currentPragmas();
+        pool.applyPragmas(profile.connectionPragmas());
+        return new ProfileSwitch(pool, previous);
+    }
+
     //working
     public boolean importXlsxToDatabase(String filePath) {
+        return importXlsxToDatabase(filePath, null);
+    }
+
+    // progress is told every batch how many rows of the current sheet were imported
+    public boolean importXlsxToDatabase(String filePath, ImportProgress progress) {
         try (FileInputStream fis = new FileInputStream(filePath);
-             XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
+             XSSFWorkbook workbook = new XSSFWorkbook(fis);
+             ConnectionPool.Lease lease = pool.write()) {
 
             // Iterate over all sheets in the workbook
             for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
@@ -50,56 +200,722 @@ public class DatabaseManager {
                 // Read column headers
                 Row headerRow = rowIterator.next();
                 int columnCount = headerRow.getPhysicalNumberOfCells();
-                List<String> columnNames = new ArrayList<>();
+                List<String> headers = new ArrayList<>();
 
                 for (int colIndex = 0; colIndex < columnCount; colIndex++) {
-                    String columnName = headerRow.getCell(colIndex).getStringCellValue().trim();
-
-                    // Handle spaces by quoting column names properly
-                    if (columnName.contains(" ")) {
-                        columnName = "\"" + columnName + "\"";
-                    }
-                    columnNames.add(columnName);
+                    headers.add(headerRow.getCell(colIndex).getStringCellValue().trim());
                 }
 
-                // Create table
-                String createTableSQL = "CREATE TABLE IF NOT EXISTS \"" + tableName + "\" (" +
-                        String.join(" TEXT, ", columnNames) + " TEXT);";
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute(createTableSQL);
+                long sheetStart = metricsStart();
+
+                // Sample the first rows to pick column types
+                boolean typed = inferColumnTypes;
+                List<Object[]> sample = new ArrayList<>();
+                while (typed && sample.size() < ColumnTypes.SAMPLE_ROWS && rowIterator.hasNext()) {
+                    sample.add(readImportRow(rowIterator.next(), columnCount, true));
                 }
+                List<String> types = typed ? inferImportTypes(sample, columnCount) : null;
 
-                // Prepare INSERT query with named columns
-                String insertSQL = "INSERT INTO \"" + tableName + "\" (" +
-                        String.join(", ", columnNames) + ") VALUES (" +
-                        String.join(", ", Collections.nCopies(columnCount, "?")) + ");";
+                // Create table and prepare INSERT query with named columns
+                String insertSQL = createImportTable(lease.connection(), tableName, headers, types);
 
-                try (PreparedStatement pstmt = conn.prepareStatement(insertSQL)) {
+                int progressInterval = batchSize;
+                long rows = 0;
+                try (BatchWriter writer = new BatchWriter(lease.connection(), insertSQL, progressInterval, batchesPerCommit)) {
+                    writer.recordChanges(changeFeed, tableName);
                     // Insert rows
+                    for (Object[] values : sample) {
+                        writer.add(values);
+                    }
+                    rows += sample.size();
                     while (rowIterator.hasNext()) {
-                        Row row = rowIterator.next();
-                        for (int colIndex = 0; colIndex < columnCount; colIndex++) {
-                            Cell cell = row.getCell(colIndex);
-                            if (cell != null) {
-                                pstmt.setString(colIndex + 1, cell.toString());
-                            } else {
-                                pstmt.setNull(colIndex + 1, Types.NULL);
+                        writer.add(readImportRow(rowIterator.next(), columnCount, typed));
+                        if (++rows % progressInterval == 0) {
+                            importProgress(progress, tableName, rows);
+                        }
+                    }
+                    writer.finish();
+                    importProgress(progress, tableName, rows);
+                    metricsImport(tableName, sheetStart, writer.getRowsWritten());
+                } finally {
+                    rowsChanged(tableName);
+                }
+            }
+
+            return true;
+        } catch (IOException | SQLException e) {
+            logError("importXlsxToDatabase", "Error importing data", e);
+            return false;
+        }
+    }
+
+    // Reads each sheet with POI's SAX event API and writes rows as they are parsed,
+    // so heap use does not grow with the number of rows in the workbook
+    public boolean importXlsxToDatabaseStreaming(String filePath) {
+        return importXlsxToDatabaseStreaming(filePath, null);
+    }
+
+    public boolean importXlsxToDatabaseStreaming(String filePath, ImportProgress progress) {
+        try (OPCPackage pkg = OPCPackage.open(filePath, PackageAccess.READ);
+             ConnectionPool.Lease lease = pool.write()) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean typed = inferColumnTypes;
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheetStream = sheets.next()) {
+                    String tableName = sheets.getSheetName().replace(" ", ""); // Replace spaces in table names
+                    System.out.println("Processing sheet: " + tableName);
+
+                    StreamingImport sheetImport = new StreamingImport(lease.connection(), tableName, typed, progress);
+                    try {
+                        parseSheet(sheetStream, styles, strings, sheetImport, typed);
+                    } finally {
+                        rowsChanged(tableName); // The sheet's writer has committed or rolled back by now
+                    }
+                }
+            }
+
+            return true;
+        } catch (StreamingSheetHandler.Abort e) {
+            logError("importXlsxToDatabaseStreaming", "Error importing data", e.getSqlException());
+            return false;
+        } catch (IOException | SQLException | OpenXML4JException | OpenXML4JRuntimeException | SAXException | ParserConfigurationException e) {
+            logError("importXlsxToDatabaseStreaming", "Error importing data", e);
+            return false;
+        }
+    }
+
+    // Re-imports a workbook into its existing tables: each sheet listed in keyColumns is upserted on its key column,
+    // so rows with a known key are updated in place instead of appended again. Sheets not listed are skipped.
+    // With skipUnchanged, rows whose content hash matches the last incremental import are not written at all.
+    // The whole workbook is imported in one transaction
+    public boolean importXlsxToDatabaseIncremental(String filePath, Map<String, String> keyColumns, boolean skipUnchanged) {
+        return importXlsxToDatabaseIncremental(filePath, keyColumns, skipUnchanged, null);
+    }
+
+    public boolean importXlsxToDatabaseIncremental(String filePath, Map<String, String> keyColumns, boolean skipUnchanged,
+                                                   ImportProgress progress) {
+        // Sheet names are matched like table names, without regard to case
+        Map<String, String> keys = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        keys.putAll(keyColumns);
+
+        try (OPCPackage pkg = OPCPackage.open(filePath, PackageAccess.READ);
+             ConnectionPool.Lease lease = pool.write()) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean typed = inferColumnTypes;
+
+            Connection conn = lease.connection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            // A reader could cache the old rows until the commit, so cached rows are dropped once it is over
+            List<String> touched = new ArrayList<>();
+            try {
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (sheets.hasNext()) {
+                    try (InputStream sheetStream = sheets.next()) {
+                        String tableName = sheets.getSheetName().replace(" ", ""); // Replace spaces in table names
+                        String keyColumn = keys.get(tableName);
+                        if (keyColumn == null) {
+                            System.out.println("Skipping sheet without key column: " + tableName);
+                            continue;
+                        }
+                        System.out.println("Processing sheet: " + tableName);
+
+                        touched.add(tableName);
+                        StreamingImport sheetImport = new StreamingImport(conn, tableName, typed, progress, keyColumn, skipUnchanged);
+                        parseSheet(sheetStream, styles, strings, sheetImport, typed);
+                        sheetImport.printSummary();
+                    }
+                }
+                // Upserted rows were recorded one by one and are logged in the same transaction
+                ChangeFeed feed = changeFeed;
+                if (feed != null) {
+                    feed.flush(conn);
+                }
+                conn.commit();
+                if (feed != null) {
+                    feed.publish();
+                }
+            } catch (IOException | SQLException | SAXException | ParserConfigurationException | RuntimeException e) {
+                conn.rollback();
+                ChangeFeed feed = changeFeed;
+                if (feed != null) {
+                    feed.discard();
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                for (String tableName : touched) {
+                    rowsChanged(tableName);
+                }
+            }
+
+            return true;
+        } catch (StreamingSheetHandler.Abort e) {
+            logError("importXlsxToDatabaseIncremental", "Error importing data", e.getSqlException());
+            return false;
+        } catch (IOException | SQLException | OpenXML4JException | OpenXML4JRuntimeException | SAXException | ParserConfigurationException e) {
+            logError("importXlsxToDatabaseIncremental", "Error importing data", e);
+            return false;
+        }
+    }
+
+    // Feeds one sheet through POI's SAX parser into sheetImport and finishes it
+    private static void parseSheet(InputStream sheetStream, StylesTable styles, ReadOnlySharedStringsTable strings,
+                                   StreamingImport sheetImport, boolean typed)
+            throws IOException, SQLException, SAXException, ParserConfigurationException {
+        ColumnTypes.RawNumberFormatter numbers = typed ? new ColumnTypes.RawNumberFormatter() : null;
+        StreamingSheetHandler handler = new StreamingSheetHandler(sheetImport, numbers);
+        DataFormatter formatter = typed ? numbers : new ColumnTypes.CellTextFormatter();
+
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, handler, formatter, !typed));
+        try {
+            parser.parse(new InputSource(sheetStream));
+            sheetImport.finish();
+        } finally {
+            sheetImport.close();
+        }
+
+        if (!handler.hasHeader()) {
+            System.out.println("Skipping empty sheet: " + sheetImport.tableName);
+        }
+    }
+
+    // Loads a CSV file (tab separated when the name ends in .tsv) into a table named after the file
+    public boolean importCsvToDatabase(String filePath) {
+        return importCsvToDatabase(filePath, null);
+    }
+
+    public boolean importCsvToDatabase(String filePath, ImportProgress progress) {
+        String fileName = Path.of(filePath).getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        String tableName = (extension > 0 ? fileName.substring(0, extension) : fileName).replace(" ", ""); // Replace spaces in table names
+        char delimiter = fileName.toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        return importDelimitedToDatabase(filePath, tableName, delimiter, progress);
+    }
+
+    // Streams a delimited file with a header line into a table the same way a sheet is imported,
+    // the file is read through a large buffer and rows are written in batched transactions
+    public boolean importDelimitedToDatabase(String filePath, String tableName, char delimiter) {
+        return importDelimitedToDatabase(filePath, tableName, delimiter, null);
+    }
+
+    public boolean importDelimitedToDatabase(String filePath, String tableName, char delimiter, ImportProgress progress) {
+        System.out.println("Processing file: " + tableName);
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+             ConnectionPool.Lease lease = pool.write()) {
+            StreamingImport fileImport = new StreamingImport(lease.connection(), tableName, inferColumnTypes, progress);
+            try {
+                new CsvParser(channel, delimiter).parse(fileImport, inferColumnTypes);
+                fileImport.finish();
+            } finally {
+                fileImport.close();
+                rowsChanged(tableName);
+            }
+
+            if (!fileImport.hasHeader()) {
+                System.out.println("Skipping empty file: " + tableName);
+            }
+            return true;
+        } catch (IOException | SQLException e) {
+            logError("importDelimitedToDatabase", "Error importing data", e);
+            return false;
+        }
+    }
+
+    // Parses the sheets of a workbook on parserThreads threads while this thread writes every row
+    // in one transaction, parsed batches wait in a bounded queue so memory stays bounded
+    public boolean importXlsxToDatabaseParallel(String filePath, int parserThreads) {
+        return importXlsxToDatabaseParallel(filePath, parserThreads, null);
+    }
+
+    public boolean importXlsxToDatabaseParallel(String filePath, int parserThreads, ImportProgress progress) {
+        if (parserThreads < 1) {
+            throw new IllegalArgumentException("Parser thread count must be at least 1.");
+        }
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parserThreads);
+        Map<Integer, StreamingImport> imports = new HashMap<>();
+        try (OPCPackage pkg = OPCPackage.open(filePath, PackageAccess.READ);
+             ConnectionPool.Lease lease = pool.write()) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean typed = inferColumnTypes;
+            int rowsPerBatch = batchSize;
+
+            List<String> tableNames = new ArrayList<>();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                tableNames.add(sheets.getSheetName().replace(" ", "")); // Replace spaces in table names
+            }
+
+            BlockingQueue<SheetParseTask.Batch> queue = new ArrayBlockingQueue<>(parserThreads * 2);
+            for (int sheetIndex = 0; sheetIndex < tableNames.size(); sheetIndex++) {
+                parsers.execute(new SheetParseTask(filePath, sheetIndex, strings, styles, typed, rowsPerBatch, queue));
+            }
+
+            // Every sheet is written in one transaction, committed once all of them are done.
+            // The sheet writers below never commit on their own
+            Connection conn = lease.connection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                int finishedSheets = 0;
+                while (finishedSheets < tableNames.size()) {
+                    SheetParseTask.Batch batch = queue.take();
+                    String tableName = tableNames.get(batch.sheetIndex());
+                    StreamingImport sheetImport = imports.computeIfAbsent(batch.sheetIndex(),
+                            index -> new StreamingImport(conn, tableName, typed, progress));
+
+                    switch (batch.kind()) {
+                        case HEADER -> {
+                            System.out.println("Processing sheet: " + tableName);
+                            sheetImport.onHeader(batch.headers());
+                        }
+                        case ROWS -> {
+                            for (Object[] values : batch.rows()) {
+                                sheetImport.onRow(values);
+                            }
+                        }
+                        case END -> {
+                            if (!sheetImport.hasHeader()) {
+                                System.out.println("Skipping empty sheet: " + tableName);
                             }
+                            sheetImport.finish();
+                            finishedSheets++;
                         }
-                        pstmt.executeUpdate();
+                        case ERROR -> throw new IOException("Error reading sheet " + tableName + ": " +
+                                batch.error().getMessage(), batch.error());
+                    }
+                }
+                // Each sheet is announced in the transaction that writes it
+                ChangeFeed feed = changeFeed;
+                if (feed != null) {
+                    for (StreamingImport sheetImport : imports.values()) {
+                        if (sheetImport.rowsWritten() > 0) {
+                            feed.record(ChangeRecord.Type.BULK, sheetImport.tableName, null, null, null, sheetImport.rowsWritten());
+                        }
+                    }
+                    feed.flush(conn);
+                }
+                conn.commit();
+                if (feed != null) {
+                    feed.publish();
+                }
+            } catch (IOException | SQLException | InterruptedException e) {
+                parsers.shutdownNow();
+                conn.rollback();
+                ChangeFeed feed = changeFeed;
+                if (feed != null) {
+                    feed.discard();
+                }
+                throw e;
+            } finally {
+                for (StreamingImport sheetImport : imports.values()) {
+                    sheetImport.close();
+                    rowsChanged(sheetImport.tableName);
+                }
+                conn.setAutoCommit(autoCommit);
+            }
+
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logError("importXlsxToDatabaseParallel", "Error importing data", e);
+            return false;
+        } catch (IOException | SQLException | OpenXML4JException | OpenXML4JRuntimeException | SAXException e) {
+            logError("importXlsxToDatabaseParallel", "Error importing data", e);
+            return false;
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    // Reports how far an import got, and stops it once its thread was interrupted (a cancelled async import)
+    private static void importProgress(ImportProgress progress, String tableName, long rows) throws SQLException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new SQLException("Import cancelled.");
+        }
+        if (progress != null) {
+            progress.rowsImported(tableName, rows);
+        }
+    }
+
+    private Object[] readImportRow(Row row, int columnCount, boolean typed) {
+        Object[] values = new Object[columnCount];
+        for (int colIndex = 0; colIndex < columnCount; colIndex++) {
+            Cell cell = row.getCell(colIndex);
+            if (typed) {
+                values[colIndex] = ColumnTypes.cellValue(cell);
+            } else {
+                values[colIndex] = cell != null ? cell.toString() : null;
+            }
+        }
+        return values;
+    }
+
+    private static List<String> inferImportTypes(List<Object[]> sample, int columnCount) {
+        List<String> types = new ArrayList<>();
+        for (int colIndex = 0; colIndex < columnCount; colIndex++) {
+            types.add(ColumnTypes.inferSqlType(sample, colIndex));
+        }
+        return types;
+    }
+
+    // Creates the table for an imported sheet and returns the INSERT statement for its rows,
+    // columns are TEXT unless types are given
+    private String createImportTable(Connection conn, String tableName, List<String> headers, List<String> types) throws SQLException {
+        List<String> columnNames = new ArrayList<>();
+        List<String> columnDefinitions = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            String header = headers.get(i);
+            // Handle spaces by quoting column names properly
+            String columnName = header.contains(" ") ? "\"" + header + "\"" : header;
+            columnNames.add(columnName);
+            columnDefinitions.add(columnName + " " + (types != null ? types.get(i) : "TEXT"));
+        }
+
+        // Create table
+        String createTableSQL = "CREATE TABLE IF NOT EXISTS \"" + tableName + "\" (" +
+                String.join(", ", columnDefinitions) + ");";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createTableSQL);
+        }
+        schemaChanged(tableName);
+
+        // Prepare INSERT query with named columns
+        return "INSERT INTO \"" + tableName + "\" (" +
+                String.join(", ", columnNames) + ") VALUES (" +
+                String.join(", ", Collections.nCopies(columnNames.size(), "?")) + ");";
+    }
+
+    private static boolean importTableExists(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement pst = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type='table' AND name = ? COLLATE NOCASE;")) {
+            pst.setString(1, tableName);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Puts a unique index on the key column and turns the import INSERT into an upsert on that column
+    private String createUpsert(Connection conn, String tableName, String insertSQL, List<String> headers, int keyIndex) throws SQLException {
+        String keyColumn = headers.get(keyIndex);
+        String quotedKey = keyColumn.contains(" ") ? "\"" + keyColumn + "\"" : keyColumn;
+        String indexName = ("upsert_" + tableName + "_" + keyColumn).replaceAll("[^A-Za-z0-9_]", "_");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS \"" + indexName + "\" ON \"" + tableName + "\" (" + quotedKey + ");");
+        } catch (SQLException e) {
+            throw new SQLException("Key column '" + keyColumn + "' of " + tableName + " holds duplicate values: " + e.getMessage(), e);
+        }
+
+        List<String> assignments = new ArrayList<>();
+        for (int i = 0; i < headers.size(); i++) {
+            if (i != keyIndex) {
+                String columnName = headers.get(i).contains(" ") ? "\"" + headers.get(i) + "\"" : headers.get(i);
+                assignments.add(columnName + " = excluded." + columnName);
+            }
+        }
+        String conflict = assignments.isEmpty() ? " DO NOTHING" : " DO UPDATE SET " + String.join(", ", assignments);
+
+        // Strip the trailing semicolon of the INSERT before adding the conflict clause
+        return insertSQL.substring(0, insertSQL.length() - 1) + " ON CONFLICT (" + quotedKey + ")" + conflict + ";";
+    }
+
+    // Writes the rows of one streamed sheet, the table is created once the header row arrives,
+    // or after the first sample of rows when column types are inferred. The caller drops the table's cached
+    // rows once the transaction holding the rows has ended, which may be after close()
+    private class StreamingImport implements StreamingSheetHandler.RowListener, AutoCloseable {
+        private final Connection conn;
+        private final String tableName;
+        private final boolean typed;
+        private final ImportProgress progress;
+        private final int progressInterval = batchSize;
+        // Set for incremental imports, rows are then upserted on this column
+        private final String keyColumn;
+        private final boolean skipUnchanged;
+        private final List<Object[]> sample = new ArrayList<>();
+        private final long start = metricsStart();
+        private List<String> headers;
+        private BatchWriter writer;
+        private RowHashes hashes;
+        private int keyIndex = -1;
+        private long rows = 0;
+        private long unchangedRows = 0;
+        private long rowsWithoutKey = 0;
+
+        StreamingImport(Connection conn, String tableName, boolean typed, ImportProgress progress) {
+            this(conn, tableName, typed, progress, null, false);
+        }
+
+        StreamingImport(Connection conn, String tableName, boolean typed, ImportProgress progress,
+                        String keyColumn, boolean skipUnchanged) {
+            this.conn = conn;
+            this.tableName = tableName;
+            this.typed = typed;
+            this.progress = progress;
+            this.keyColumn = keyColumn;
+            this.skipUnchanged = skipUnchanged;
+        }
+
+        @Override
+        public void onHeader(List<String> headers) throws SQLException {
+            this.headers = headers;
+            if (!typed) {
+                open(null);
+            }
+        }
+
+        @Override
+        public void onRow(Object[] values) throws SQLException {
+            if (++rows % progressInterval == 0) {
+                importProgress(progress, tableName, rows);
+            }
+            if (writer != null) {
+                write(values);
+                return;
+            }
+            sample.add(values);
+            if (sample.size() >= ColumnTypes.SAMPLE_ROWS) {
+                open(inferImportTypes(sample, headers.size()));
+            }
+        }
+
+        private void open(List<String> types) throws SQLException {
+            if (keyColumn == null) {
+                writer = new BatchWriter(conn, createImportTable(conn, tableName, headers, types), batchSize, batchesPerCommit);
+                // Ignored inside the parallel import's transaction, which records the sheet itself
+                writer.recordChanges(changeFeed, tableName);
+            } else {
+                keyIndex = -1;
+                for (int i = 0; i < headers.size() && keyIndex < 0; i++) {
+                    if (headers.get(i).equalsIgnoreCase(keyColumn)) {
+                        keyIndex = i;
+                    }
+                }
+                if (keyIndex < 0) {
+                    throw new SQLException("Key column '" + keyColumn + "' not found in sheet " + tableName + ".");
+                }
+
+                boolean existed = importTableExists(conn, tableName);
+                String insertSQL = createImportTable(conn, tableName, headers, types);
+                writer = new BatchWriter(conn, createUpsert(conn, tableName, insertSQL, headers, keyIndex), batchSize, batchesPerCommit);
+                if (skipUnchanged) {
+                    hashes = new RowHashes(conn, tableName, batchSize);
+                    if (!existed) {
+                        hashes.clear(); // Hashes left from a dropped table would skip every row
+                    }
+                }
+            }
+            for (Object[] values : sample) {
+                write(values);
+            }
+            sample.clear();
+        }
+
+        private void write(Object[] values) throws SQLException {
+            if (keyIndex >= 0) {
+                Object key = values[keyIndex];
+                if (key == null) {
+                    rowsWithoutKey++;
+                    return; // Cannot be matched to a row, it would be appended on every import
+                }
+                if (hashes != null) {
+                    String rowKey = key.toString();
+                    long hash = hashes.hash(values);
+                    if (hashes.unchanged(rowKey, hash)) {
+                        unchangedRows++;
+                        return;
                     }
+                    hashes.record(rowKey, hash);
+                }
+                ChangeFeed feed = changeFeed;
+                if (feed != null) {
+                    feed.record(ChangeRecord.Type.UPSERT, tableName, headers.get(keyIndex), key.toString(), changeValues(values), 1);
                 }
             }
+            writer.add(values);
+        }
+
+        void printSummary() {
+            if (writer != null) {
+                System.out.println("Upserted " + writer.getRowsWritten() + " rows into " + tableName + ", " +
+                        unchangedRows + " unchanged, " + rowsWithoutKey + " without a key.");
+            }
+        }
 
+        boolean hasHeader() {
+            return headers != null;
+        }
+
+        long rowsWritten() {
+            return writer != null ? writer.getRowsWritten() : 0;
+        }
+
+        void finish() throws SQLException {
+            if (writer == null && headers != null) {
+                open(inferImportTypes(sample, headers.size())); // Sheet had fewer rows than the sample
+            }
+            if (writer != null) {
+                if (hashes != null) {
+                    hashes.finish();
+                }
+                writer.finish();
+                metricsImport(tableName, start, writer.getRowsWritten());
+                importProgress(progress, tableName, rows);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (writer != null) {
+                if (hashes != null) {
+                    hashes.close();
+                }
+                writer.close();
+            }
+        }
+    }
+
+    // Writes each table to its own sheet through SXSSF's sliding window, so memory stays flat however large
+    // the tables are, importing the file again recreates the same tables and values
+    public boolean exportTablesToXlsx(List<String> tableNames, String filePath) {
+        long start = metricsStart();
+        long rows = 0;
+        Path part = null;
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(TableExporter.WINDOW_ROWS)) {
+            workbook.setCompressTempFiles(true);
+            for (String tableName : tableNames) {
+                String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+                try (ConnectionPool.Lease lease = pool.read();
+                     PreparedStatement pst = lease.connection().prepareStatement("SELECT * FROM " + quotedTableName + ";")) {
+                    pst.setFetchSize(fetchSize);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        rows += TableExporter.writeSheet(workbook, tableName, rs);
+                    }
+                }
+            }
+            part = partialExport(filePath);
+            writeWorkbook(workbook, part);
+            finishExport(part, filePath);
+            metricsRead("exportTablesToXlsx", start, rows);
+            return true;
+        } catch (IOException | SQLException | RuntimeException e) {
+            logError("exportTablesToXlsx", "Error exporting tables", e);
+            deletePartialExport(part);
+            return false;
+        }
+    }
+
+    public boolean exportTableToXlsx(String tableName, String filePath) {
+        return exportTablesToXlsx(List.of(tableName), filePath);
+    }
+
+    // Writes the result of any SELECT to one sheet, the header row holds the result column labels
+    public boolean exportQueryToXlsx(String sql, String sheetName, String filePath, Object... parameters) {
+        long start = metricsStart();
+        Path part = null;
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(TableExporter.WINDOW_ROWS)) {
+            workbook.setCompressTempFiles(true);
+            long rows;
+            try (ConnectionPool.Lease lease = pool.read();
+                 PreparedStatement pst = prepareExportQuery(lease, sql, parameters);
+                 ResultSet rs = pst.executeQuery()) {
+                rows = TableExporter.writeSheet(workbook, sheetName, rs);
+            }
+            part = partialExport(filePath);
+            writeWorkbook(workbook, part);
+            finishExport(part, filePath);
+            metricsRead("exportQueryToXlsx", start, rows);
+            return true;
+        } catch (IOException | SQLException | RuntimeException e) {
+            logError("exportQueryToXlsx", "Error exporting query", e);
+            deletePartialExport(part);
+            return false;
+        }
+    }
+
+    public boolean exportTableToCsv(String tableName, String filePath) {
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        return exportQueryToCsv("SELECT * FROM " + quotedTableName + ";", filePath);
+    }
+
+    // Streams the result of any SELECT into a UTF-8 CSV file with a header line
+    public boolean exportQueryToCsv(String sql, String filePath, Object... parameters) {
+        long start = metricsStart();
+        Path part = null;
+        try {
+            part = partialExport(filePath);
+            long rows;
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 ConnectionPool.Lease lease = pool.read();
+                 PreparedStatement pst = prepareExportQuery(lease, sql, parameters);
+                 ResultSet rs = pst.executeQuery()) {
+                rows = TableExporter.writeCsv(channel, rs);
+            }
+            finishExport(part, filePath);
+            metricsRead("exportQueryToCsv", start, rows);
             return true;
         } catch (IOException | SQLException e) {
-            System.out.println("Error importing data: " + e.getMessage());
+            logError("exportQueryToCsv", "Error exporting query", e);
+            deletePartialExport(part);
             return false;
         }
     }
 
+    // Exports hold their own statement for as long as they read, like the streaming cursors
+    private PreparedStatement prepareExportQuery(ConnectionPool.Lease lease, String sql, Object... parameters) throws SQLException {
+        PreparedStatement pst = lease.connection().prepareStatement(sql);
+        pst.setFetchSize(fetchSize);
+        for (int i = 0; i < parameters.length; i++) {
+            pst.setObject(i + 1, parameters[i]);
+        }
+        return pst;
+    }
+
+    private static void writeWorkbook(SXSSFWorkbook workbook, Path file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            workbook.write(out);
+        }
+    }
+
+    // Exports are written next to the target and moved over it once complete, so a failed export
+    // leaves a file that was already at filePath untouched
+    private static Path partialExport(String filePath) {
+        return Path.of(filePath + ".part");
+    }
+
+    private static void finishExport(Path part, String filePath) throws IOException {
+        try {
+            Files.move(part, Path.of(filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, Path.of(filePath), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deletePartialExport(Path part) {
+        if (part == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(part);
+        } catch (IOException e) {
+            log.error("Error deleting partial export {}: {}", part, e.getMessage(), e);
+        }
+    }
+
     //working
     public boolean addRowToTable(String tableName, String[] values) throws SQLException {
+        long start = metricsStart();
         // Quote the table name if it contains spaces
         String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
 
@@ -116,22 +932,82 @@ public class DatabaseManager {
         sql.append(");");
 
         // Prepare the statement and set values
-        try (PreparedStatement pst = conn.prepareStatement(sql.toString())) {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement pst = lease.prepare(sql.toString());
             for (int i = 0; i < values.length; i++) {
                 pst.setString(i + 1, values[i]);
             }
 
-            int rowsAffected = pst.executeUpdate();
+            ChangeFeed feed = changeFeed;
+            int rowsAffected = feed != null
+                    ? feed.executeUpdate(lease.connection(), pst, ChangeRecord.Type.INSERT, tableName, null, null, Arrays.asList(values))
+                    : pst.executeUpdate();
+            metricsWrite("addRowToTable", start, rowsAffected);
+            rowsChanged(tableName);
             return rowsAffected > 0; // Return true if row was added successfully
         } catch (SQLException e) {
-            System.out.println("Error inserting row: " + e.getMessage());
+            logError("addRowToTable", "Error inserting row", e);
             return false; // Return false if there was an error
         }
     }
 
 
+    // Inserts many rows in batches inside one transaction, every row must have one value per column.
+    // Nothing is written when a row fails
+    public boolean addRows(String tableName, Iterable<String[]> rows) throws SQLException {
+        long start = metricsStart();
+        // Quote the table name if it contains spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+
+        Iterator<String[]> iterator = rows.iterator();
+        if (!iterator.hasNext()) {
+            return true; // Nothing to insert
+        }
+
+        String[] first = iterator.next();
+        String sql = "INSERT INTO " + quotedTableName + " VALUES(" +
+                String.join(",", Collections.nCopies(first.length, "?")) + ");";
+
+        try (ConnectionPool.Lease lease = pool.write();
+             // Committed once by finish(), closing the writer after a failure rolls back every row
+             BatchWriter writer = new BatchWriter(lease.connection(), sql, batchSize, Integer.MAX_VALUE)) {
+            writer.recordChanges(changeFeed, tableName);
+            writer.add(first);
+            while (iterator.hasNext()) {
+                String[] values = iterator.next();
+                if (values.length != first.length) {
+                    throw new SQLException("Every row must have " + first.length + " values.");
+                }
+                writer.add(values);
+            }
+            writer.finish();
+            metricsWrite("addRows", start, writer.getRowsWritten());
+            return true;
+        } catch (SQLException e) {
+            logError("addRows", "Error inserting rows", e);
+            return false;
+        } finally {
+            rowsChanged(tableName);
+        }
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void setBatchesPerCommit(int batchesPerCommit) {
+        if (batchesPerCommit < 1) {
+            throw new IllegalArgumentException("Batches per commit must be at least 1.");
+        }
+        this.batchesPerCommit = batchesPerCommit;
+    }
+
     //working
     public boolean updateRowInTable(String tableName, String columnName, String columnValue, List<String> newValues) throws SQLException {
+        long start = metricsStart();
 
         List<String> columnNames = this.getTableHeaders(tableName);
 
@@ -156,7 +1032,8 @@ public class DatabaseManager {
         sql.append(" WHERE " + quotedColumnName + " = ?;");
 
         // Prepare the statement and set the values
-        try (PreparedStatement pst = conn.prepareStatement(sql.toString())) {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement pst = lease.prepare(sql.toString());
             // Set the new values for the row
             for (int i = 0; i < newValues.size(); i++) {
                 pst.setString(i + 1, newValues.get(i));
@@ -164,16 +1041,57 @@ public class DatabaseManager {
             // Set the condition for the row update
             pst.setString(columnNames.size() + 1, columnValue);
 
-            int rowsAffected = pst.executeUpdate();
+            ChangeFeed feed = changeFeed;
+            int rowsAffected = feed != null
+                    ? feed.executeUpdate(lease.connection(), pst, ChangeRecord.Type.UPDATE, tableName, columnName, columnValue, newValues)
+                    : pst.executeUpdate();
+            metricsWrite("updateRowInTable", start, rowsAffected);
+            rowsChanged(tableName);
             return rowsAffected > 0; // Return true if at least one row was updated
         } catch (SQLException e) {
-            System.out.println("Error updating row: " + e.getMessage());
+            logError("updateRowInTable", "Error updating row", e);
             return false; // Return false if there was an error
         }
     }
 
+    // Replaces the rows matching each key with its new values in one transaction
+    // Returns the number of rows updated per key, or an empty map if the whole update was rolled back
+    public Map<String, Integer> updateRowsInTable(String tableName, String columnName, Map<String, List<String>> newValuesByKey) throws SQLException {
+        long start = metricsStart();
+
+        List<String> columnNames = this.getTableHeaders(tableName);
+
+        // Quote table and column names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedColumnName = columnName.contains(" ") ? "\"" + columnName + "\"" : columnName;
+
+        for (List<String> newValues : newValuesByKey.values()) {
+            if (columnNames.size() != newValues.size()) {
+                throw new SQLException("Column names and new values count must be the same.");
+            }
+        }
+
+        StringBuilder sql = new StringBuilder("UPDATE " + quotedTableName + " SET ");
+        for (int i = 0; i < columnNames.size(); i++) {
+            String quotedColumn = columnNames.get(i).contains(" ") ? "\"" + columnNames.get(i) + "\"" : columnNames.get(i);
+            sql.append(quotedColumn + " = ?");
+            if (i < columnNames.size() - 1) {
+                sql.append(", ");
+            }
+        }
+        sql.append(" WHERE " + quotedColumnName + " = ?;");
+
+        return executeKeyedBatch("updateRowsInTable", start, tableName, sql.toString(), newValuesByKey.keySet(), key -> {
+            List<String> newValues = newValuesByKey.get(key);
+            Object[] values = newValues.toArray(new Object[newValues.size() + 1]);
+            values[newValues.size()] = key;
+            return values;
+        }, ChangeRecord.Type.UPDATE, columnName, newValuesByKey::get);
+    }
+
     //working
     public List<String> getRow(String tableName, String columnName, String field) throws SQLException {
+        long start = metricsStart();
         // Quote table and column names if they contain spaces
         String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
         String quotedColumnName = columnName.contains(" ") ? "\"" + columnName + "\"" : columnName;
@@ -181,209 +1099,768 @@ public class DatabaseManager {
         // SQL query to select the row based on the condition
         String sql = "SELECT * FROM " + quotedTableName + " WHERE " + quotedColumnName + " = ?;";
 
+        RowCache cache = rowCache;
+        RowCache.Key key = null;
+        long version = 0;
+        if (cache != null) {
+            key = RowCache.key(tableName, "*", columnName, field);
+            List<String> cached = cache.get(key);
+            if (cached != null) {
+                metricsRead("getRow", start, cached.isEmpty() ? 0 : 1);
+                return new ArrayList<>(cached);
+            }
+            version = cache.version(key.table());
+        }
+
         List<String> rowData = new ArrayList<>();
 
-        try (PreparedStatement pst = conn.prepareStatement(sql)) {
-            pst.setString(1, field);
-            ResultSet result = pst.executeQuery();
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pst = lease.prepare(sql);
+            pst.setString(1, field);
+
+            try (ResultSet result = pst.executeQuery()) {
+                // Retrieve and store the row data if it exists
+                if (result.next()) {
+                    ResultSetMetaData metaData = result.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+
+                    for (int i = 1; i <= columnCount; i++) {
+                        rowData.add(result.getString(i)); // Add each column's value to the list
+                    }
+                }
+            }
+            if (cache != null) {
+                cache.put(key, version, rowData);
+            }
+        } catch (SQLException e) {
+            logError("getRow", "Error retrieving row", e);
+            return rowData; // Counted as an error, not as a read
+        }
+
+        metricsRead("getRow", start, rowData.isEmpty() ? 0 : 1);
+        return rowData; // Return the list instead of an array
+    }
+
+    //works but only for multiple columns, not singular ones
+    public List<String> getFilteredValues(String tableName, String[] columns, String filterColumn, String filterValue) throws SQLException {
+        long start = metricsStart();
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Columns array must have at least one column.");
+        }
+
+        // Quote table and column names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
+
+        // Quote each column name properly
+        String[] quotedColumns = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            quotedColumns[i] = columns[i].contains(" ") ? "\"" + columns[i] + "\"" : columns[i];
+        }
+
+        // Build the SELECT query
+        String sql = "SELECT " + String.join(", ", quotedColumns) + " FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " = ? LIMIT 1;";
+
+        RowCache cache = rowCache;
+        RowCache.Key key = null;
+        long version = 0;
+        if (cache != null) {
+            key = RowCache.key(tableName, String.join(",", quotedColumns), filterColumn, filterValue);
+            List<String> cached = cache.get(key);
+            if (cached != null) {
+                metricsRead("getFilteredValues", start, cached.isEmpty() ? 0 : 1);
+                return new ArrayList<>(cached);
+            }
+            version = cache.version(key.table());
+        }
+
+        List<String> results = new ArrayList<>();
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pst = lease.prepare(sql);
+            pst.setString(1, filterValue);
+
+            try (ResultSet resultSet = pst.executeQuery()) {
+                if (resultSet.next()) { // Ensure there's a result before accessing data
+                    for (int i = 0; i < columns.length; i++) {
+                        results.add(resultSet.getString(i + 1)); // Get values by index
+                    }
+                }
+            }
+            if (cache != null) {
+                cache.put(key, version, results);
+            }
+        } catch (SQLException e) {
+            logError("getFilteredValues", "Error retrieving filtered values", e);
+            return results;
+        }
+
+        metricsRead("getFilteredValues", start, results.isEmpty() ? 0 : 1);
+        return results;
+    }
+
+
+    public boolean deleteRowFromTable(String tableName, String filterColumn, String filterValue) throws SQLException {
+        long start = metricsStart();
+        // Quote table and column names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
+
+        // Build the SQL query
+        String sql = "DELETE FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " = ?;";
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            PreparedStatement pst = lease.prepare(sql);
+            // Set the filter value in the query
+            pst.setString(1, filterValue);
+
+            // Execute the query and return if any row was affected
+            ChangeFeed feed = changeFeed;
+            int rowsAffected = feed != null
+                    ? feed.executeUpdate(lease.connection(), pst, ChangeRecord.Type.DELETE, tableName, filterColumn, filterValue, null)
+                    : pst.executeUpdate();
+            metricsWrite("deleteRowFromTable", start, rowsAffected);
+            rowsChanged(tableName);
+            return rowsAffected > 0; // Return true if a row was deleted
+        } catch (SQLException e) {
+            logError("deleteRowFromTable", "Error deleting row", e);
+            return false; // Return false if there was an error
+        }
+    }
+
+    // Deletes the rows matching each filter value in one transaction
+    // Returns the number of rows deleted per value, or an empty map if the whole delete was rolled back
+    public Map<String, Integer> deleteRowsFromTable(String tableName, String filterColumn, Collection<String> filterValues) throws SQLException {
+        long start = metricsStart();
+        // Quote table and column names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
+
+        String sql = "DELETE FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " = ?;";
+
+        // A repeated value would report 0 the second time, so each value is deleted once
+        return executeKeyedBatch("deleteRowsFromTable", start, tableName, sql, new LinkedHashSet<>(filterValues), key -> new Object[]{key},
+                ChangeRecord.Type.DELETE, filterColumn, key -> null);
+    }
+
+    //working
+    public boolean belongsToTable(String tableName, String field) throws SQLException {
+        long start = metricsStart();
+        SchemaCatalog.TableSchema schema;
+        try {
+            schema = catalog.getSchema(tableName);
+        } catch (SQLException e) {
+            logError("belongsToTable", "Error checking table values", e);
+            return false;
+        }
+        if (schema.columnNames().isEmpty()) {
+            return false;
+        }
+
+        // Indexed columns are checked first, a value found there needs no table scan.
+        // The other columns are only scanned when the value is not in an indexed one
+        List<String> indexed = new ArrayList<>();
+        List<String> scanned = new ArrayList<>();
+        for (String column : schema.columnNames()) {
+            (schema.indexedColumns().contains(column) ? indexed : scanned).add(column);
+        }
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            boolean found = containsValue(lease, tableName, indexed, field) || containsValue(lease, tableName, scanned, field);
+            metricsRead("belongsToTable", start, found ? 1 : 0);
+            return found;
+        } catch (SQLException e) {
+            logError("belongsToTable", "Error checking table values", e);
+        }
+
+        return false; // No matching value found in any column of the table
+    }
+
+    // Checks the columns in one statement, SQLite answers the OR terms from indexes when every column has one
+    private static boolean containsValue(ConnectionPool.Lease lease, String tableName, List<String> columns, String field) throws SQLException {
+        if (columns.isEmpty()) {
+            return false;
+        }
+
+        // Quote table name to handle spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+
+        StringBuilder sql = new StringBuilder("SELECT 1 FROM " + quotedTableName + " WHERE ");
+        for (int i = 0; i < columns.size(); i++) {
+            String quotedColumn = columns.get(i).contains(" ") ? "\"" + columns.get(i) + "\"" : columns.get(i);
+            sql.append(quotedColumn).append(" = ?");
+            if (i < columns.size() - 1) {
+                sql.append(" OR ");
+            }
+        }
+        sql.append(" LIMIT 1");
+
+        PreparedStatement pst = lease.prepare(sql.toString());
+        for (int i = 0; i < columns.size(); i++) {
+            pst.setString(i + 1, field);
+        }
+        try (ResultSet result = pst.executeQuery()) {
+            return result.next(); // Field exists in at least one column
+        }
+    }
+
+    // Creates an index on each column so belongsToTable finds values in them without scanning the table,
+    // SQLite keeps the indexes up to date on every write and they are found again after reopening
+    public boolean addLookupIndex(String tableName, List<String> columns) throws SQLException {
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("Column list cannot be empty.");
+        }
+
+        // Quote the table name if it contains spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement()) {
+            try {
+                for (String column : columns) {
+                    String quotedColumn = column.contains(" ") ? "\"" + column + "\"" : column;
+                    stmt.execute("CREATE INDEX IF NOT EXISTS \"" + lookupIndexName(tableName, column) + "\" ON " +
+                            quotedTableName + " (" + quotedColumn + ");");
+                }
+            } finally {
+                schemaChanged(tableName);
+            }
+        } catch (SQLException e) {
+            logError("addLookupIndex", "Error creating lookup index", e);
+            return false;
+        }
+        return true;
+    }
+
+    // Drops the indexes addLookupIndex created on any column of the table, false when there were none
+    public boolean dropLookupIndex(String tableName) throws SQLException {
+        List<String> columns = getTableHeaders(tableName);
+        Set<String> lookupIndexes = new HashSet<>();
+        for (String column : columns) {
+            lookupIndexes.add(lookupIndexName(tableName, column));
+        }
+
+        int dropped = 0;
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement()) {
+            List<String> existing = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA index_list(\"" + tableName.replace("\"", "\"\"") + "\")")) {
+                while (rs.next()) {
+                    existing.add(rs.getString("name"));
+                }
+            }
+            try {
+                for (String index : existing) {
+                    if (lookupIndexes.contains(index)) {
+                        stmt.execute("DROP INDEX IF EXISTS \"" + index + "\";");
+                        dropped++;
+                    }
+                }
+            } finally {
+                if (dropped > 0) {
+                    schemaChanged(tableName);
+                }
+            }
+        } catch (SQLException e) {
+            logError("dropLookupIndex", "Error dropping lookup index", e);
+            return false;
+        }
+        return dropped > 0;
+    }
+
+    // Sanitizing alone maps names like "a b" and "a_b" to the same index, the hash of the raw names keeps them apart
+    private static String lookupIndexName(String tableName, String column) {
+        String hash = Integer.toHexString((tableName + "\0" + column).hashCode());
+        return ("lookup_" + tableName + "_" + column).replaceAll("[^A-Za-z0-9_]", "_") + "_" + hash;
+    }
+
+    //working
+    public List<String> getTableHeaders(String tableName) throws SQLException {
+        List<String> headers = new ArrayList<>();
+
+        try {
+            headers.addAll(catalog.getSchema(tableName).columnNames()); // Answered from the schema catalog
+        } catch (SQLException e) {
+            logError("getTableHeaders", "Error retrieving table headers", e);
+        }
+
+        return headers;
+    }
+
+    // Declared column types in the same order as getTableHeaders, empty when a column has no type
+    public List<String> getColumnTypes(String tableName) throws SQLException {
+        List<String> types = new ArrayList<>();
+
+        try {
+            types.addAll(catalog.getSchema(tableName).columnTypes());
+        } catch (SQLException e) {
+            logError("getColumnTypes", "Error retrieving column types", e);
+        }
+
+        return types;
+    }
+
+    //working
+    public List<String> getColumnValues(String tableName, String columnName) throws SQLException {
+        long start = metricsStart();
+        List<String> values = new ArrayList<>();
+
+        // Quote column and table names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedColumnName = columnName.contains(" ") ? "\"" + columnName + "\"" : columnName;
+
+        // Prepare the SQL query with quoted column and table names
+        String sql = "SELECT " + quotedColumnName + " FROM " + quotedTableName;
+
+        try (ConnectionPool.Lease lease = pool.read();
+             ResultSet result = lease.prepare(sql).executeQuery()) {
+
+            while (result.next()) {
+                String value = result.getString(1); // Get the first (and only) column value
+
+                // Add the value to the list only if it is not null or empty
+                if (value != null && !value.trim().isEmpty()) {
+                    values.add(value);
+                }
+            }
+        } catch (SQLException e) {
+            logError("getColumnValues", "Error retrieving column values", e);
+            return values;
+        }
+
+        metricsRead("getColumnValues", start, values.size());
+        return values;
+    }
+
+    // Streams the same values as getColumnValues without loading them into a list.
+    // The stream holds a reader connection until it is closed, use it in a try-with-resources block.
+    // Without reader connections the values are read into memory first, so the single connection is not held
+    // Further reads on this thread while the stream is open share its reader
+    public Stream<String> streamColumnValues(String tableName, String columnName) throws SQLException {
+        // Quote column and table names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedColumnName = columnName.contains(" ") ? "\"" + columnName + "\"" : columnName;
+
+        String sql = "SELECT " + quotedColumnName + " FROM " + quotedTableName;
+
+        // Skip null or empty values like getColumnValues does
+        ResultCursor<String> cursor = new ResultCursor<>(pool.read(), sql, fetchSize, rs -> {
+            String value = rs.getString(1);
+            return value != null && !value.trim().isEmpty() ? value : null;
+        }, true);
+        return cursor.stream();
+    }
+
+    // Streams the same values as getColumnValuesByFilter, the stream must be closed like streamColumnValues
+    public Stream<String> streamColumnValuesByFilter(String tableName, String columnToSelect, String filterColumn, String filterValue) throws SQLException {
+        // Quote table and column names if they contain spaces
+        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedColumnToSelect = columnToSelect.contains(" ") ? "\"" + columnToSelect + "\"" : columnToSelect;
+        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
+
+        String sql = "SELECT " + quotedColumnToSelect + " FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " LIKE ?;";
+
+        // Null values are kept, like getColumnValuesByFilter does
+        ResultCursor<String> cursor = new ResultCursor<>(pool.read(), sql, fetchSize, rs -> rs.getString(1),
+                false, "%" + filterValue + "%");
+        return cursor.stream();
+    }
+
+    // Calls action for every non-empty value of a column, one row at a time.
+    // The action may read from the database, those reads run on the same reader as the values
+    public boolean forEachColumnValue(String tableName, String columnName, Consumer<String> action) throws SQLException {
+        try (Stream<String> values = streamColumnValues(tableName, columnName)) {
+            values.forEach(action);
+            return true;
+        } catch (SQLException | IllegalStateException e) {
+            logError("forEachColumnValue", "Error retrieving column values", e);
+            return false;
+        }
+    }
 
-            // Retrieve and store the row data if it exists
-            if (result.next()) {
-                ResultSetMetaData metaData = result.getMetaData();
-                int columnCount = metaData.getColumnCount();
+    public void setInferColumnTypes(boolean inferColumnTypes) {
+        this.inferColumnTypes = inferColumnTypes;
+    }
 
-                for (int i = 1; i <= columnCount; i++) {
-                    rowData.add(result.getString(i)); // Add each column's value to the list
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println("Error retrieving row: " + e.getMessage());
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be at least 1.");
         }
+        this.fetchSize = fetchSize;
+    }
 
-        return rowData; // Return the list instead of an array
+    // Returns the first page of a table in rowid order, pass the page's continuation token to get the next one
+    public Page getPage(String tableName, String continuationToken, int pageSize) throws SQLException {
+        return getPage(tableName, null, continuationToken, pageSize);
     }
 
-    //works but only for multiple columns, not singular ones
-    public List<String> getFilteredValues(String tableName, String[] columns, String filterColumn, String filterValue) throws SQLException {
-        if (columns.length == 0) {
-            throw new IllegalArgumentException("Columns array must have at least one column.");
+    // Keyset pagination: each page seeks past the last (orderColumn, rowid) of the previous page
+    // instead of skipping rows, so every page costs the same. Index orderColumn to make the seek fast
+    public Page getPage(String tableName, String orderColumn, String continuationToken, int pageSize) throws SQLException {
+        long start = metricsStart();
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1.");
         }
 
-        // Quote table and column names if they contain spaces
+        // Quote table name to handle spaces
         String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
-        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
-
-        // Quote each column name properly
-        String[] quotedColumns = new String[columns.length];
-        for (int i = 0; i < columns.length; i++) {
-            quotedColumns[i] = columns[i].contains(" ") ? "\"" + columns[i] + "\"" : columns[i];
+        boolean byRowid = orderColumn == null;
+        String quotedOrderColumn = byRowid ? null : orderColumn.contains(" ") ? "\"" + orderColumn + "\"" : orderColumn;
+
+        // Decode the position of the last row of the previous page
+        Long lastRowid = null;
+        Object lastValue = null;
+        if (continuationToken != null) {
+            String[] parts = new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8).split("\\|", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid continuation token.");
+            }
+            lastRowid = Long.parseLong(parts[0]);
+            lastValue = switch (parts[1]) {
+                case "N" -> null;
+                case "I" -> Long.parseLong(parts[2]);
+                case "R" -> Double.parseDouble(parts[2]);
+                case "T" -> parts[2];
+                case "B" -> Base64.getUrlDecoder().decode(parts[2]);
+                default -> throw new IllegalArgumentException("Invalid continuation token.");
+            };
         }
 
-        // Build the SELECT query
-        String sql = "SELECT " + String.join(", ", quotedColumns) + " FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " = ? LIMIT 1;";
+        // The first column is always the rowid, ordered pages also select the order column second
+        StringBuilder sql = new StringBuilder("SELECT rowid, ");
+        if (!byRowid) {
+            sql.append(quotedOrderColumn).append(", ");
+        }
+        sql.append("* FROM ").append(quotedTableName);
+
+        List<Object> parameters = new ArrayList<>();
+        if (lastRowid != null) {
+            if (byRowid) {
+                sql.append(" WHERE rowid > ?");
+            } else if (lastValue == null) {
+                // NULLs sort first, so finish the NULL rows and then take every non-null row
+                sql.append(" WHERE (").append(quotedOrderColumn).append(" IS NULL AND rowid > ?) OR ")
+                        .append(quotedOrderColumn).append(" IS NOT NULL");
+            } else {
+                sql.append(" WHERE (").append(quotedOrderColumn).append(", rowid) > (?, ?)");
+                parameters.add(lastValue);
+            }
+            parameters.add(lastRowid);
+        }
+        sql.append(byRowid ? " ORDER BY rowid" : " ORDER BY " + quotedOrderColumn + ", rowid");
+        sql.append(" LIMIT ?;");
+        parameters.add(pageSize + 1); // One extra row tells whether there is another page
+
+        int skipped = byRowid ? 1 : 2;
+        List<String> columns = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        String nextToken = null;
+
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pst = lease.prepare(sql.toString());
+            for (int i = 0; i < parameters.size(); i++) {
+                pst.setObject(i + 1, parameters.get(i));
+            }
 
-        List<String> results = new ArrayList<>();
+            try (ResultSet result = pst.executeQuery()) {
+                ResultSetMetaData metaData = result.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                for (int i = skipped + 1; i <= columnCount; i++) {
+                    columns.add(metaData.getColumnName(i));
+                }
 
-        try (PreparedStatement pst = conn.prepareStatement(sql)) {
-            pst.setString(1, filterValue);
+                long rowid = 0;
+                Object orderValue = null;
+                while (result.next()) {
+                    if (rows.size() == pageSize) {
+                        nextToken = encodePageToken(rowid, orderValue);
+                        break;
+                    }
+                    rowid = result.getLong(1);
+                    orderValue = byRowid ? null : result.getObject(2);
 
-            try (ResultSet resultSet = pst.executeQuery()) {
-                if (resultSet.next()) { // Ensure there's a result before accessing data
-                    for (int i = 0; i < columns.length; i++) {
-                        results.add(resultSet.getString(i + 1)); // Get values by index
+                    List<String> row = new ArrayList<>(columnCount - skipped);
+                    for (int i = skipped + 1; i <= columnCount; i++) {
+                        row.add(result.getString(i));
                     }
+                    rows.add(Collections.unmodifiableList(row));
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Error retrieving filtered values: " + e.getMessage());
+            logError("getPage", "Error retrieving page", e);
+            return new Page(columns, rows, nextToken);
         }
 
-        return results;
+        metricsRead("getPage", start, rows.size());
+        return new Page(columns, rows, nextToken);
     }
 
+    private static String encodePageToken(long rowid, Object orderValue) {
+        String value;
+        if (orderValue == null) {
+            value = "N|";
+        } else if (orderValue instanceof Integer || orderValue instanceof Long) {
+            value = "I|" + orderValue;
+        } else if (orderValue instanceof Number) {
+            value = "R|" + orderValue;
+        } else if (orderValue instanceof byte[] bytes) {
+            // Blobs have no text form, the bytes go into the token as Base64
+            value = "B|" + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } else {
+            value = "T|" + orderValue;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((rowid + "|" + value).getBytes(StandardCharsets.UTF_8));
+    }
 
-    public boolean deleteRowFromTable(String tableName, String filterColumn, String filterValue) throws SQLException {
+    //working
+    public List<String> getTables() throws SQLException {
+        return new ArrayList<>(catalog.getTables());
+    }
+
+    public List<String> getColumnValuesByFilter(String tableName, String columnToSelect, String filterColumn, String filterValue) throws SQLException {
+        long start = metricsStart();
         // Quote table and column names if they contain spaces
         String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+        String quotedColumnToSelect = columnToSelect.contains(" ") ? "\"" + columnToSelect + "\"" : columnToSelect;
         String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
 
-        // Build the SQL query
-        String sql = "DELETE FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " = ?;";
+        // SQL query to select values from columnToSelect where filterColumn contains filterValue
+        String sql = "SELECT " + quotedColumnToSelect + " FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " LIKE ?;";
 
-        try (PreparedStatement pst = conn.prepareStatement(sql)) {
-            // Set the filter value in the query
-            pst.setString(1, filterValue);
+        List<String> resultList = new ArrayList<>();
 
-            // Execute the query and return if any row was affected
-            int rowsAffected = pst.executeUpdate();
-            return rowsAffected > 0; // Return true if a row was deleted
+        try (ConnectionPool.Lease lease = pool.read()) {
+            PreparedStatement pst = lease.prepare(sql);
+            // Set the filter value to search for substrings
+            pst.setString(1, "%" + filterValue + "%");
+
+            // Execute the query and process the result set
+            try (ResultSet resultSet = pst.executeQuery()) {
+                while (resultSet.next()) {
+                    resultList.add(resultSet.getString(1)); // Get the value from the specified column
+                }
+            }
         } catch (SQLException e) {
-            System.out.println("Error deleting row: " + e.getMessage());
-            return false; // Return false if there was an error
+            logError("getColumnValuesByFilter", "Error retrieving column values", e);
+            return resultList;
         }
-    }
 
-    //working
-    public boolean belongsToTable(String tableName, String field) throws SQLException {
-        // Get the list of columns dynamically
-        List<String> columns = this.getTableHeaders(tableName);
+        metricsRead("getColumnValuesByFilter", start, resultList.size());
+        return resultList;
+    }
 
-        // Quote table name to handle spaces
-        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+    // Starts a query on one table, add conditions, columns, ordering and a limit and then run it with list(),
+    // first(), stream() or count(). explain() shows whether SQLite will use an index
+    public Query query(String tableName) {
+        return new Query(this, tableName);
+    }
 
-        // Iterate through each column to check if the field exists in any of them
-        for (String column : columns) {
-            String quotedColumn = column.contains(" ") ? "\"" + column + "\"" : column;
-            String sql = "SELECT 1 FROM " + quotedTableName + " WHERE " + quotedColumn + " = ? LIMIT 1";
+    List<List<String>> runQuery(Query query, int limit) throws SQLException {
+        long start = metricsStart();
+        // Unknown tables and columns are the caller's mistake, they are thrown instead of logged
+        checkQueryColumns(query);
+        List<List<String>> rows = new ArrayList<>();
 
-            try (PreparedStatement pst = conn.prepareStatement(sql)) {
-                pst.setString(1, field);
+        try {
+            String sql = query.sql(query.columns().isEmpty() ? "*" : query.selectList(), limit, true);
+            try (ConnectionPool.Lease lease = pool.read()) {
+                PreparedStatement pst = lease.prepare(sql);
+                bindQuery(pst, query.parameters(limit));
 
                 try (ResultSet result = pst.executeQuery()) {
-                    if (result.next()) {
-                        return true; // Field exists in at least one column
+                    int columnCount = result.getMetaData().getColumnCount();
+                    while (result.next()) {
+                        List<String> row = new ArrayList<>(columnCount);
+                        for (int i = 1; i <= columnCount; i++) {
+                            row.add(result.getString(i));
+                        }
+                        rows.add(Collections.unmodifiableList(row));
                     }
                 }
-            } catch (SQLException e) {
-                System.out.println("Error checking table values: " + e.getMessage());
             }
+        } catch (SQLException e) {
+            logError("query", "Error running query", e);
+            return rows;
         }
 
-        return false; // No matching value found in any column of the table
+        metricsRead("query", start, rows.size());
+        return rows;
     }
 
+    // The stream holds a connection until it is closed, like streamColumnValues
+    Stream<List<String>> streamQuery(Query query) throws SQLException {
+        checkQueryColumns(query);
+        int limit = query.rowLimit();
+        String sql = query.sql(query.columns().isEmpty() ? "*" : query.selectList(), limit, true);
+        // Rows are never null, so none are skipped
+        ResultCursor<List<String>> cursor = new ResultCursor<>(pool.read(), sql, fetchSize, rs -> {
+            int columnCount = rs.getMetaData().getColumnCount();
+            List<String> row = new ArrayList<>(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getString(i));
+            }
+            return Collections.unmodifiableList(row);
+        }, true, query.parameters(limit));
+        return cursor.stream();
+    }
 
+    long countQuery(Query query) throws SQLException {
+        long start = metricsStart();
+        checkQueryColumns(query);
+        long count = 0;
 
-    //working
-    public List<String> getTableHeaders(String tableName) throws SQLException {
-        Statement st = conn.createStatement();
-        List<String> headers = new ArrayList<>();
-        String query = "SELECT * FROM " + tableName + " LIMIT 1"; // Fetch only one row for efficiency
-
-        try (ResultSet rs = st.executeQuery(query)) {
-            if (rs != null) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
-                for (int i = 1; i <= columnCount; i++) {
-                    headers.add(metaData.getColumnName(i));
+        try {
+            // Ordering does not change the count, the limit does
+            String sql = "SELECT count(*) FROM (" + query.sql("1", query.rowLimit(), false) + ");";
+            try (ConnectionPool.Lease lease = pool.read()) {
+                PreparedStatement pst = lease.prepare(sql);
+                bindQuery(pst, query.parameters(query.rowLimit()));
+                try (ResultSet result = pst.executeQuery()) {
+                    count = result.next() ? result.getLong(1) : 0;
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Error retrieving table headers: " + e.getMessage());
+            logError("queryCount", "Error counting query rows", e);
+            return count;
         }
 
-        return headers;
+        metricsRead("queryCount", start, 1);
+        return count;
     }
 
-    //working
-    public List<String> getColumnValues(String tableName, String columnName) throws SQLException {
-        List<String> values = new ArrayList<>();
-
-        // Quote column and table names if they contain spaces
-        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
-        String quotedColumnName = columnName.contains(" ") ? "\"" + columnName + "\"" : columnName;
-
-        // Prepare the SQL query with quoted column and table names
-        String sql = "SELECT " + quotedColumnName + " FROM " + quotedTableName;
-
-        try (PreparedStatement pst = conn.prepareStatement(sql);
-             ResultSet result = pst.executeQuery()) {
+    // Each step of the plan on its own line, indented two spaces per level under its parent step
+    List<String> explainQuery(Query query) throws SQLException {
+        long start = metricsStart();
+        checkQueryColumns(query);
+        List<String> plan = new ArrayList<>();
 
-            while (result.next()) {
-                String value = result.getString(1); // Get the first (and only) column value
-
-                // Add the value to the list only if it is not null or empty
-                if (value != null && !value.trim().isEmpty()) {
-                    values.add(value);
+        try {
+            String sql = "EXPLAIN QUERY PLAN " + query.sql(query.columns().isEmpty() ? "*" : query.selectList(), query.rowLimit(), true) + ";";
+            // EXPLAIN does not check whether the schema changed, so reading sqlite_master first makes the
+            // connection load indexes created since its last query. Not cached for the same reason
+            try (ConnectionPool.Lease lease = pool.read()) {
+                try (Statement refresh = lease.connection().createStatement()) {
+                    refresh.executeQuery("SELECT count(*) FROM sqlite_master;").close();
+                }
+                try (PreparedStatement pst = lease.connection().prepareStatement(sql)) {
+                    bindQuery(pst, query.parameters(query.rowLimit()));
+
+                    // Columns are id, parent, notused and detail, parents are listed before their children
+                    Map<Integer, Integer> depths = new HashMap<>();
+                    try (ResultSet result = pst.executeQuery()) {
+                        while (result.next()) {
+                            int depth = depths.getOrDefault(result.getInt(2), -1) + 1;
+                            depths.put(result.getInt(1), depth);
+                            plan.add("  ".repeat(depth) + result.getString(4));
+                        }
+                    }
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Error retrieving column values: " + e.getMessage());
+            logError("explainQuery", "Error explaining query", e);
+            return plan;
         }
 
-        return values;
+        metricsRead("explainQuery", start, plan.size());
+        return plan;
     }
 
-    //working
-    public List<String> getTables() throws SQLException {
-        List<String> tables = new ArrayList<>();
-        String query = "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%';"; // Exclude internal SQLite tables
-
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                tables.add(rs.getString("name"));
+    // Fails on unknown tables and columns. SQLite would read an unknown double-quoted column as a text literal
+    private void checkQueryColumns(Query query) throws SQLException {
+        List<String> names = catalog.getSchema(query.tableName()).columnNames();
+        if (names.isEmpty()) {
+            throw new SQLException("No such table: " + query.tableName());
+        }
+        Set<String> known = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        known.addAll(names);
+        known.add("rowid");
+        for (String column : query.referencedColumns()) {
+            if (!known.contains(column)) {
+                throw new SQLException("No such column in " + query.tableName() + ": " + column);
             }
         }
-        return tables;
     }
 
-    public List<String> getColumnValuesByFilter(String tableName, String columnToSelect, String filterColumn, String filterValue) throws SQLException {
-        // Quote table and column names if they contain spaces
-        String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
-        String quotedColumnToSelect = columnToSelect.contains(" ") ? "\"" + columnToSelect + "\"" : columnToSelect;
-        String quotedFilterColumn = filterColumn.contains(" ") ? "\"" + filterColumn + "\"" : filterColumn;
+    private static void bindQuery(PreparedStatement pst, Object[] parameters) throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            pst.setObject(i + 1, parameters[i]);
+        }
+    }
 
-        // SQL query to select values from columnToSelect where filterColumn contains filterValue
-        String sql = "SELECT " + quotedColumnToSelect + " FROM " + quotedTableName + " WHERE " + quotedFilterColumn + " LIKE ?;";
+    // Loads the columns (all of them when columns is empty) into memory column by column for aggregates that
+    // scan every row, see ColumnarSnapshot. Returns null when the table or a column does not exist
+    public ColumnarSnapshot loadColumnarSnapshot(String tableName, List<String> columns) throws SQLException {
+        long start = metricsStart();
+        ColumnarSnapshot snapshot = null;
 
-        List<String> resultList = new ArrayList<>();
+        try {
+            SchemaCatalog.TableSchema schema = catalog.getSchema(tableName);
+            List<String> names = schema.columnNames();
+            if (names.isEmpty()) {
+                throw new SQLException("No such table: " + tableName);
+            }
+            List<String> selected = new ArrayList<>();
+            List<String> types = new ArrayList<>();
+            for (String column : columns.isEmpty() ? names : columns) {
+                int index = -1;
+                for (int i = 0; i < names.size() && index < 0; i++) {
+                    if (names.get(i).equalsIgnoreCase(column)) {
+                        index = i;
+                    }
+                }
+                if (index < 0) {
+                    throw new SQLException("No such column in " + tableName + ": " + column);
+                }
+                selected.add(names.get(index));
+                types.add(schema.columnTypes().get(index));
+            }
 
-        try (PreparedStatement pst = conn.prepareStatement(sql)) {
-            // Set the filter value to search for substrings
-            pst.setString(1, "%" + filterValue + "%");
+            String quotedTableName = tableName.contains(" ") ? "\"" + tableName + "\"" : tableName;
+            StringJoiner selectList = new StringJoiner(", ");
+            for (String column : selected) {
+                selectList.add(column.contains(" ") ? "\"" + column + "\"" : column);
+            }
 
-            // Execute the query and process the result set
-            try (ResultSet resultSet = pst.executeQuery()) {
-                while (resultSet.next()) {
-                    resultList.add(resultSet.getString(1)); // Get the value from the specified column
+            try (ConnectionPool.Lease lease = pool.read()) {
+                // The row count sizes the column arrays, so they are not copied while growing.
+                // Both statements run in one read transaction so the count matches the rows read
+                lease.connection().setAutoCommit(false);
+                try {
+                    int rows;
+                    try (ResultSet result = lease.prepare("SELECT count(*) FROM " + quotedTableName + ";").executeQuery()) {
+                        rows = result.next() ? result.getInt(1) : 0;
+                    }
+                    List<ColumnarSnapshot.ColumnLoader> loaders = new ArrayList<>();
+                    for (String type : types) {
+                        loaders.add(new ColumnarSnapshot.ColumnLoader(type, rows));
+                    }
+
+                    // Not cached, a snapshot is loaded once and then scanned many times
+                    try (PreparedStatement pst = lease.connection().prepareStatement("SELECT " + selectList + " FROM " + quotedTableName + ";")) {
+                        pst.setFetchSize(fetchSize);
+                        rows = 0;
+                        try (ResultSet result = pst.executeQuery()) {
+                            while (result.next()) {
+                                for (int i = 0; i < loaders.size(); i++) {
+                                    loaders.get(i).add(result, i + 1);
+                                }
+                                rows++;
+                            }
+                        }
+                    }
+                    snapshot = new ColumnarSnapshot(tableName, selected, loaders, rows);
+                } finally {
+                    lease.connection().commit();
+                    lease.connection().setAutoCommit(true);
                 }
             }
         } catch (SQLException e) {
-            System.out.println("Error retrieving column values: " + e.getMessage());
+            logError("loadColumnarSnapshot", "Error loading columnar snapshot", e);
+            return null;
         }
 
-        return resultList;
+        metricsRead("loadColumnarSnapshot", start, snapshot.getRowCount());
+        return snapshot;
     }
 
     public void createTable(String tableName, LinkedHashMap<String, String> columns) throws SQLException {
@@ -412,11 +1889,13 @@ public class DatabaseManager {
         String sql = "CREATE TABLE IF NOT EXISTS " + quotedTableName + " (" + columnDefinitions + ");";
 
         // Execute the query
-        try (Statement stmt = conn.createStatement()) {
+        try (ConnectionPool.Lease lease = pool.write();
+             Statement stmt = lease.connection().createStatement()) {
             stmt.execute(sql);
+            schemaChanged(tableName);
             System.out.println("Table '" + tableName + "' created successfully.");
         } catch (SQLException e) {
-            System.out.println("Error creating table: " + e.getMessage());
+            logError("createTable", "Error creating table", e);
         }
     }
 
@@ -437,12 +1916,308 @@ public class DatabaseManager {
             String sql = "ALTER TABLE " + quotedTableName + " ADD COLUMN \"" + columnName + "\" " + columnType + ";";
 
             // Execute the query
-            try (Statement stmt = conn.createStatement()) {
+            try (ConnectionPool.Lease lease = pool.write();
+                 Statement stmt = lease.connection().createStatement()) {
                 stmt.execute(sql);
+                schemaChanged(tableName);
                 System.out.println("Added column '" + columnName + "' to table '" + tableName + "'.");
             } catch (SQLException e) {
-                System.out.println("Error adding column '" + columnName + "' to table '" + tableName + "': " + e.getMessage());
+                logError("addColumnsToTable", "Error adding column '" + columnName + "' to table '" + tableName + "'", e);
+            }
+        }
+    }
+
+    // Cached statements and schema entries for the table are stale after DDL
+    private void schemaChanged(String tableName) {
+        pool.schemaChanged();
+        catalog.invalidate(tableName);
+        rowsChanged(tableName);
+    }
+
+    private static List<String> changeValues(Object[] values) {
+        List<String> text = new ArrayList<>(values.length);
+        for (Object value : values) {
+            text.add(value != null ? value.toString() : null);
+        }
+        return text;
+    }
+
+    // Drops the cached rows of a table after a write
+    private void rowsChanged(String tableName) {
+        RowCache cache = rowCache;
+        if (cache != null) {
+            cache.invalidate(tableName);
+        }
+    }
+
+    public long getStatementCacheHits() {
+        return pool.getStatementCacheHits();
+    }
+
+    public long getStatementCacheMisses() {
+        return pool.getStatementCacheMisses();
+    }
+
+    // Caches up to maxEntries rows read by getRow and getFilteredValues for timeToLive,
+    // every write made through this manager drops the cached rows of the table it changed
+    public void enableRowCache(int maxEntries, Duration timeToLive) {
+        rowCache = new RowCache(maxEntries, timeToLive.toNanos());
+    }
+
+    public void disableRowCache() {
+        RowCache current = rowCache;
+        rowCache = null;
+        if (current != null) {
+            current.clear();
+        }
+    }
+
+    public long getRowCacheHits() {
+        RowCache current = rowCache;
+        return current != null ? current.getHits() : 0L;
+    }
+
+    public long getRowCacheMisses() {
+        RowCache current = rowCache;
+        return current != null ? current.getMisses() : 0L;
+    }
+
+    public long getRowCacheEvictions() {
+        RowCache current = rowCache;
+        return current != null ? current.getEvictions() : 0L;
+    }
+
+    // Share of cached lookups answered without a query, between 0 and 1
+    public double getRowCacheHitRate() {
+        RowCache current = rowCache;
+        return current != null ? current.getHitRate() : 0.0;
+    }
+
+    // Records every write made through this manager in a feed of the last capacity changes, read them with
+    // subscribeToChanges(). With persistent set changes are also kept in the _dbm_change_log table,
+    // written in the same transaction as the change, so they survive a restart and outlive the ring.
+    // Imports that commit along the way record one BULK change per commit
+    public boolean enableChangeFeed(int capacity, boolean persistent) throws SQLException {
+        try (ConnectionPool.Lease lease = pool.write()) {
+            changeFeed = new ChangeFeed(pool, lease.connection(), capacity, persistent);
+            return true;
+        } catch (SQLException e) {
+            logError("enableChangeFeed", "Error creating change log", e);
+            return false;
+        }
+    }
+
+    // Stops recording changes, existing subscriptions see no new ones. The change log table is kept
+    public void disableChangeFeed() throws SQLException {
+        // Taking the writer waits for a running write, so it is not left with only some of its changes published
+        ConnectionPool.Lease lease = pool.write();
+        try {
+            changeFeed = null;
+        } finally {
+            lease.close();
+        }
+    }
+
+    // Subscribes to the changes committed from now on
+    public ChangeSubscription subscribeToChanges() {
+        ChangeFeed feed = requireChangeFeed();
+        return new ChangeSubscription(feed, feed.getLatestSequence());
+    }
+
+    // Continues after a position returned by ChangeSubscription.getPosition(). Only a persistent feed continues
+    // its numbering after a restart, a new in-memory feed starts again at 1 and rejects older positions
+    public ChangeSubscription subscribeToChanges(long afterSequence) {
+        ChangeFeed feed = requireChangeFeed();
+        if (afterSequence > feed.getLatestSequence()) {
+            // Changes numbered up to the position would never be returned
+            throw new IllegalArgumentException("Position " + afterSequence + " is after the latest change " +
+                    feed.getLatestSequence() + ", positions from another feed cannot be resumed.");
+        }
+        return new ChangeSubscription(feed, afterSequence);
+    }
+
+    // Sequence of the last committed change, 0 when there is none or the feed is disabled
+    public long getLatestChangeSequence() {
+        ChangeFeed feed = changeFeed;
+        return feed != null ? feed.getLatestSequence() : 0L;
+    }
+
+    // Deletes persisted changes up to and including throughSequence once every consumer has read them
+    public int trimChangeLog(long throughSequence) throws SQLException {
+        ChangeFeed feed = changeFeed;
+        if (feed == null) {
+            return 0;
+        }
+        try (ConnectionPool.Lease lease = pool.write()) {
+            return feed.trim(lease.connection(), throughSequence);
+        } catch (SQLException e) {
+            logError("trimChangeLog", "Error trimming change log", e);
+            return 0;
+        }
+    }
+
+    private ChangeFeed requireChangeFeed() {
+        ChangeFeed feed = changeFeed;
+        if (feed == null) {
+            throw new IllegalStateException("Change feed is not enabled.");
+        }
+        return feed;
+    }
+
+    // Starts collecting latency, row and import metrics, jmxName publishes them as MBeans (null to skip JMX)
+    public void enableMetrics(String jmxName) {
+        disableMetrics();
+        metrics = new DatabaseMetrics(pool, metricsListeners, jmxName);
+    }
+
+    // Stops collecting metrics and removes the MBeans, instrumented calls then only check a null field
+    public void disableMetrics() {
+        DatabaseMetrics current = metrics;
+        metrics = null;
+        if (current != null) {
+            current.unregister();
+        }
+    }
+
+    // Returns the collected totals, or null while metrics are disabled
+    public DatabaseMetricsMBean getMetrics() {
+        return metrics;
+    }
+
+    // Returns the latency of one operation (named after the method), or null if it has not been called
+    public OperationStatsMBean getOperationMetrics(String operation) {
+        DatabaseMetrics current = metrics;
+        return current != null ? current.getOperation(operation) : null;
+    }
+
+    public void addMetricsListener(MetricsListener listener) {
+        metricsListeners.add(listener);
+    }
+
+    public void removeMetricsListener(MetricsListener listener) {
+        metricsListeners.remove(listener);
+    }
+
+    // Runs one statement per key as JDBC batches inside a single transaction and maps each key to its update count
+    // Each key with changed rows is recorded in the change feed as changeType on keyColumn, with changedValues as its new row.
+    // Called inside a transaction the caller already opened on the writer (from an import's progress callback), the
+    // keys run under a savepoint instead and the caller's transaction is left open. Their changes are then only
+    // recorded, the caller numbers and publishes them with its own when it commits or discards them when it rolls back
+    private Map<String, Integer> executeKeyedBatch(String operation, long start, String tableName, String sql, Collection<String> keys,
+                                                   Function<String, Object[]> bind, ChangeRecord.Type changeType, String keyColumn,
+                                                   Function<String, List<String>> changedValues) throws SQLException {
+        Map<String, Integer> results = new LinkedHashMap<>();
+        if (keys.isEmpty()) {
+            return results;
+        }
+
+        try (ConnectionPool.Lease lease = pool.write()) {
+            Connection conn = lease.connection();
+            ChangeFeed feed = changeFeed;
+            boolean ownsTransaction = conn.getAutoCommit();
+            Savepoint savepoint = null;
+            if (ownsTransaction) {
+                conn.setAutoCommit(false);
+            } else {
+                savepoint = conn.setSavepoint();
+            }
+            try (BatchWriter writer = new BatchWriter(conn, sql, batchSize, batchesPerCommit, true)) {
+                for (String key : keys) {
+                    writer.add(bind.apply(key));
+                }
+                writer.finish();
+
+                int[] counts = writer.getUpdateCounts();
+                if (feed != null) {
+                    int i = 0;
+                    for (String key : keys) {
+                        if (counts[i] > 0) {
+                            feed.record(changeType, tableName, keyColumn, key, changedValues.apply(key), counts[i]);
+                        }
+                        i++;
+                    }
+                    if (ownsTransaction) {
+                        feed.flush(conn);
+                    }
+                }
+                if (ownsTransaction) {
+                    conn.commit();
+                    if (feed != null) {
+                        feed.publish();
+                    }
+                } else {
+                    conn.releaseSavepoint(savepoint);
+                }
+
+                long rowsChanged = 0;
+                int i = 0;
+                for (String key : keys) {
+                    results.put(key, counts[i]);
+                    rowsChanged += counts[i++];
+                }
+                metricsWrite(operation, start, rowsChanged);
+                rowsChanged(tableName);
+            } catch (SQLException e) {
+                if (ownsTransaction) {
+                    conn.rollback();
+                    if (feed != null) {
+                        feed.discard();
+                    }
+                } else {
+                    conn.rollback(savepoint); // Nothing was recorded yet, the caller's changes are kept
+                }
+                throw e;
+            } finally {
+                if (ownsTransaction) {
+                    conn.setAutoCommit(true);
+                }
             }
+        } catch (SQLException e) {
+            logError(operation, "Error running bulk statement", e);
+            results.clear();
+        }
+        return results;
+    }
+
+    private long metricsStart() {
+        return metrics != null ? System.nanoTime() : 0L;
+    }
+
+    private void metricsRead(String operation, long start, long rows) {
+        DatabaseMetrics current = metrics;
+        if (current != null && start != 0L) {
+            current.recordRead(operation, System.nanoTime() - start, rows);
+        }
+    }
+
+    private void metricsWrite(String operation, long start, long rows) {
+        DatabaseMetrics current = metrics;
+        if (current != null && start != 0L) {
+            current.recordWrite(operation, System.nanoTime() - start, rows);
+        }
+    }
+
+    private void metricsImport(String tableName, long start, long rows) {
+        DatabaseMetrics current = metrics;
+        if (current != null && start != 0L) {
+            current.recordImport(tableName, rows, System.nanoTime() - start);
+        }
+    }
+
+    private void logError(String operation, String message, Exception e) {
+        log.error("{}: {}", message, e.getMessage(), e);
+        DatabaseMetrics current = metrics;
+        if (current != null) {
+            current.recordError(operation);
+        }
+    }
+
+    // Closes every cached statement and all connections
+    @Override
+    public void close() throws SQLException {
+        disableMetrics();
+        if (pool != null) {
+            pool.close();
         }
     }
 
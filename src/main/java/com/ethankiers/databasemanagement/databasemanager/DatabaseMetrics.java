@@ -0,0 +1,166 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collects the metrics of one manager while they are enabled. Every counter is a LongAdder,
+ * so recording from many threads does not contend. When registered with JMX the totals are published
+ * under {@code com.ethankiers.databasemanagement:type=DatabaseManager,name=<name>} and each operation
+ * gets its own bean with an extra {@code operation} key.
+ */
+final class DatabaseMetrics implements DatabaseMetricsMBean {
+
+    private static final Logger log = LogManager.getLogger(DatabaseMetrics.class);
+    private static final String DOMAIN = "com.ethankiers.databasemanagement";
+
+    private final ConnectionPool pool;
+    private final List<MetricsListener> listeners;
+    private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+    private final LongAdder rowsRead = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder importedRows = new LongAdder();
+    private volatile String lastImportTable;
+    private volatile double lastImportRowsPerSecond;
+    private final String jmxName;
+
+    // jmxName is null to keep the metrics out of JMX
+    DatabaseMetrics(ConnectionPool pool, List<MetricsListener> listeners, String jmxName) {
+        this.pool = pool;
+        this.listeners = listeners;
+        this.jmxName = jmxName;
+        if (jmxName != null) {
+            register(this, null);
+        }
+    }
+
+    void recordRead(String operation, long nanos, long rows) {
+        stats(operation).record(nanos, rows);
+        rowsRead.add(rows);
+        for (MetricsListener listener : listeners) {
+            listener.operationCompleted(operation, nanos, rows, false);
+        }
+    }
+
+    void recordWrite(String operation, long nanos, long rows) {
+        stats(operation).record(nanos, rows);
+        rowsWritten.add(rows);
+        for (MetricsListener listener : listeners) {
+            listener.operationCompleted(operation, nanos, rows, false);
+        }
+    }
+
+    void recordError(String operation) {
+        stats(operation).recordError();
+        for (MetricsListener listener : listeners) {
+            listener.operationCompleted(operation, 0, 0, true);
+        }
+    }
+
+    void recordImport(String tableName, long rows, long nanos) {
+        importedRows.add(rows);
+        rowsWritten.add(rows);
+        lastImportTable = tableName;
+        lastImportRowsPerSecond = nanos == 0 ? 0 : rows * 1_000_000_000.0 / nanos;
+        for (MetricsListener listener : listeners) {
+            listener.sheetImported(tableName, rows, nanos);
+        }
+    }
+
+    OperationStatsMBean getOperation(String operation) {
+        return operations.get(operation);
+    }
+
+    private OperationStats stats(String operation) {
+        OperationStats stats = operations.get(operation);
+        if (stats == null) {
+            stats = operations.computeIfAbsent(operation, name -> {
+                OperationStats created = new OperationStats(name);
+                if (jmxName != null) {
+                    register(created, name);
+                }
+                return created;
+            });
+        }
+        return stats;
+    }
+
+    @Override
+    public String[] getOperations() {
+        return operations.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public long getRowsRead() {
+        return rowsRead.sum();
+    }
+
+    @Override
+    public long getRowsWritten() {
+        return rowsWritten.sum();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return pool.getStatementCacheHits();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return pool.getStatementCacheMisses();
+    }
+
+    @Override
+    public long getImportedRows() {
+        return importedRows.sum();
+    }
+
+    @Override
+    public String getLastImportTable() {
+        return lastImportTable;
+    }
+
+    @Override
+    public double getLastImportRowsPerSecond() {
+        return lastImportRowsPerSecond;
+    }
+
+    // Removes this manager's beans from the platform MBean server
+    void unregister() {
+        if (jmxName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            // The pattern matches the totals bean and every operation bean
+            for (ObjectName name : server.queryNames(new ObjectName(objectName(null) + ",*"), null)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.error("Error unregistering metrics: {}", e.getMessage(), e);
+        }
+    }
+
+    private void register(Object bean, String operation) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName(operation));
+        } catch (JMException e) {
+            log.error("Error registering metrics: {}", e.getMessage(), e);
+        }
+    }
+
+    private ObjectName objectName(String operation) throws JMException {
+        String name = DOMAIN + ":type=DatabaseManager,name=" + ObjectName.quote(jmxName);
+        return new ObjectName(operation == null ? name : name + ",operation=" + operation);
+    }
+}
@@ -0,0 +1,23 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+/**
+ * Totals for one {@link DatabaseManager}, per-operation latency is published as {@link OperationStatsMBean}s.
+ */
+public interface DatabaseMetricsMBean {
+
+    String[] getOperations();
+
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    long getImportedRows();
+
+    String getLastImportTable();
+
+    double getLastImportRowsPerSecond();
+}
@@ -0,0 +1,10 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+/**
+ * Told how many rows of a table an import has written so far, once per batch and once when the table is done.
+ * Called on the importing thread, hand the update to the UI thread (for example with Platform.runLater) before touching controls.
+ */
+public interface ImportProgress {
+
+    void rowsImported(String tableName, long rows);
+}
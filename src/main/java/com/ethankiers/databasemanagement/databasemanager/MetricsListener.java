@@ -0,0 +1,14 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+/**
+ * Receives a callback for every instrumented call while metrics are enabled on a {@link DatabaseManager}.
+ * Callbacks run on the calling thread right after the call finishes, so they should return quickly.
+ */
+public interface MetricsListener {
+
+    // rows is the number of rows returned for reads and the number of rows changed for writes
+    void operationCompleted(String operation, long nanos, long rows, boolean failed);
+
+    default void sheetImported(String tableName, long rows, long nanos) {
+    }
+}
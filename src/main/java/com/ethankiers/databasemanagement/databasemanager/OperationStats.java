@@ -0,0 +1,106 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram for one operation, bucket i counts calls that took less than 2^i nanoseconds.
+ */
+final class OperationStats implements OperationStatsMBean {
+
+    private final String operation;
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    OperationStats(String operation) {
+        this.operation = operation;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos, long rowCount) {
+        long value = Math.max(nanos, 0);
+        buckets[64 - Long.numberOfLeadingZeros(value)].increment();
+        count.increment();
+        rows.add(rowCount);
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRows() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long calls = count.sum();
+        return calls == 0 ? 0 : totalNanos.sum() / 1000.0 / calls;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos.get() / 1000.0;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    @Override
+    public double getP95Micros() {
+        return percentileMicros(0.95);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    private double percentileMicros(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(Math.pow(2, i), maxNanos.get()) / 1000.0;
+            }
+        }
+        return getMaxMicros();
+    }
+}
@@ -0,0 +1,26 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+/**
+ * Call count, error count and latency of one {@link DatabaseManager} operation.
+ * Percentiles come from a power-of-two histogram, so they are upper bounds within a factor of two.
+ */
+public interface OperationStatsMBean {
+
+    String getOperation();
+
+    long getCount();
+
+    long getErrorCount();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    double getMaxMicros();
+
+    double getP50Micros();
+
+    double getP95Micros();
+
+    double getP99Micros();
+}
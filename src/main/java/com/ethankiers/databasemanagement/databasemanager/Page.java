@@ -0,0 +1,37 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.util.List;
+
+/**
+ * One page of rows returned by {@link DatabaseManager#getPage}.
+ * Pass the continuation token back to fetch the next page, it is null on the last page.
+ */
+public final class Page {
+
+    private final List<String> columns;
+    private final List<List<String>> rows;
+    private final String continuationToken;
+
+    Page(List<String> columns, List<List<String>> rows, String continuationToken) {
+        this.columns = List.copyOf(columns);
+        this.rows = List.copyOf(rows);
+        this.continuationToken = continuationToken;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    // Each row has one value per column, null values are kept
+    public List<List<String>> getRows() {
+        return rows;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A tuning profile switched on for a while by {@link DatabaseManager#useProfile(TuningProfile)}.
+ * Closing it puts the per-connection settings back the way they were before the switch. Like the switch itself,
+ * closing waits for streams open on other threads and fails while the closing thread has a stream open.
+ */
+public final class ProfileSwitch implements AutoCloseable {
+
+    private final ConnectionPool pool;
+    private final List<String> previous;
+    private boolean closed = false;
+
+    ProfileSwitch(ConnectionPool pool, List<String> previous) {
+        this.pool = pool;
+        this.previous = previous;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.applyPragmas(previous);
+    }
+}
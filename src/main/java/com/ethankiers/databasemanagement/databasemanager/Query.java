@@ -0,0 +1,260 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A SELECT on one table built step by step, started with {@link DatabaseManager#query(String)}.
+ * All conditions are combined with AND and every value is bound as a parameter, so queries with the
+ * same shape share one cached statement whatever values they use. Prefix conditions become a range
+ * ({@code column >= 'ab' AND column < 'ac'}) that an index on the column can answer, unlike
+ * {@code LIKE 'ab%'}. A query is not thread-safe, build and run it on one thread.
+ */
+public final class Query {
+
+    private final DatabaseManager manager;
+    private final String tableName;
+    private final List<String> columns = new ArrayList<>();
+    private final List<String> conditions = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+    private final List<String> ordering = new ArrayList<>();
+    // Every column named anywhere in the query, checked against the table before it runs
+    private final List<String> referencedColumns = new ArrayList<>();
+    private int limit = -1;
+
+    Query(DatabaseManager manager, String tableName) {
+        this.manager = manager;
+        this.tableName = tableName;
+    }
+
+    // Columns to return, all columns when never called
+    public Query select(String... columns) {
+        for (String column : columns) {
+            this.columns.add(column);
+            referencedColumns.add(column);
+        }
+        return this;
+    }
+
+    // A null value matches rows where the column is NULL
+    public Query whereEquals(String column, Object value) {
+        if (value == null) {
+            referencedColumns.add(column);
+            conditions.add(quote(column) + " IS NULL");
+        } else {
+            condition(column, " = ?", value);
+        }
+        return this;
+    }
+
+    public Query whereGreaterThan(String column, Object value) {
+        return condition(column, " > ?", value);
+    }
+
+    public Query whereAtLeast(String column, Object value) {
+        return condition(column, " >= ?", value);
+    }
+
+    public Query whereLessThan(String column, Object value) {
+        return condition(column, " < ?", value);
+    }
+
+    public Query whereAtMost(String column, Object value) {
+        return condition(column, " <= ?", value);
+    }
+
+    // Both bounds are included
+    public Query whereBetween(String column, Object low, Object high) {
+        if (low == null || high == null) {
+            throw new IllegalArgumentException("Comparison values for " + column + " cannot be null.");
+        }
+        referencedColumns.add(column);
+        conditions.add(quote(column) + " BETWEEN ? AND ?");
+        parameters.add(low);
+        parameters.add(high);
+        return this;
+    }
+
+    // The list is padded to the next power of two by repeating its last value,
+    // so lists of different lengths only produce a few distinct statements
+    public Query whereIn(String column, Collection<?> values) {
+        referencedColumns.add(column);
+        if (values.isEmpty()) {
+            conditions.add("0"); // Matches nothing, like IN () would
+            return this;
+        }
+        int size = Math.max(Integer.highestOneBit(values.size() - 1) << 1, 1);
+        StringBuilder condition = new StringBuilder(quote(column)).append(" IN (");
+        Object last = null;
+        for (Object value : values) {
+            parameters.add(value);
+            last = value;
+        }
+        for (int i = values.size(); i < size; i++) {
+            parameters.add(last);
+        }
+        for (int i = 0; i < size; i++) {
+            condition.append(i == 0 ? "?" : ", ?");
+        }
+        conditions.add(condition.append(")").toString());
+        return this;
+    }
+
+    // Case-sensitive match on the start of text values, run as a range so an index on the column is used
+    public Query whereStartsWith(String column, String prefix) {
+        if (prefix.isEmpty()) {
+            referencedColumns.add(column);
+            conditions.add("typeof(" + quote(column) + ") = 'text'");
+            return this;
+        }
+        condition(column, " >= ?", prefix);
+        String upper = prefixUpperBound(prefix);
+        if (upper != null) {
+            condition(column, " < ?", upper);
+        }
+        return this;
+    }
+
+    public Query orderBy(String column) {
+        referencedColumns.add(column);
+        ordering.add(quote(column));
+        return this;
+    }
+
+    public Query orderByDescending(String column) {
+        referencedColumns.add(column);
+        ordering.add(quote(column) + " DESC");
+        return this;
+    }
+
+    public Query limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative.");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    // Each row has one value per selected column, null values are kept
+    public List<List<String>> list() throws SQLException {
+        return manager.runQuery(this, limit);
+    }
+
+    // The first matching row, or an empty list when nothing matches
+    public List<String> first() throws SQLException {
+        List<List<String>> rows = manager.runQuery(this, limit == 0 ? 0 : 1);
+        return rows.isEmpty() ? new ArrayList<>() : new ArrayList<>(rows.get(0));
+    }
+
+    // Streams the rows without loading them into a list, close the stream like streamColumnValues
+    public Stream<List<String>> stream() throws SQLException {
+        return manager.streamQuery(this);
+    }
+
+    // Rows that list() would return, the limit is respected
+    public long count() throws SQLException {
+        return manager.countQuery(this);
+    }
+
+    // The steps of SQLite's plan, one per line and indented under their parent step.
+    // A line starting with "SCAN" reads the whole table or index, "SEARCH ... USING INDEX" seeks into an index
+    public List<String> explain() throws SQLException {
+        return manager.explainQuery(this);
+    }
+
+    // True when the plan reads any table or index from start to end
+    public boolean scansTable() throws SQLException {
+        for (String step : explain()) {
+            if (step.trim().startsWith("SCAN ")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The SQL that list() runs, with ? in place of each value and the limit
+    public String toSql() {
+        return sql(columns.isEmpty() ? "*" : selectList(), limit, true) + ";";
+    }
+
+    String tableName() {
+        return tableName;
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+
+    // -1 when there is no limit
+    int rowLimit() {
+        return limit;
+    }
+
+    List<String> referencedColumns() {
+        return referencedColumns;
+    }
+
+    // Without the closing semicolon, so count() can wrap it in a subquery
+    String sql(String selectList, int rowLimit, boolean ordered) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(selectList).append(" FROM ").append(quote(tableName));
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (ordered && !ordering.isEmpty()) {
+            sql.append(" ORDER BY ").append(String.join(", ", ordering));
+        }
+        if (rowLimit >= 0) {
+            sql.append(" LIMIT ?"); // Bound like the values, see parameters(int)
+        }
+        return sql.toString();
+    }
+
+    String selectList() {
+        List<String> quoted = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            quoted.add(quote(column));
+        }
+        return String.join(", ", quoted);
+    }
+
+    Object[] parameters(int rowLimit) {
+        List<Object> bound = new ArrayList<>(parameters);
+        if (rowLimit >= 0) {
+            bound.add(rowLimit);
+        }
+        return bound.toArray();
+    }
+
+    private Query condition(String column, String comparison, Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Comparison value for " + column + " cannot be null.");
+        }
+        referencedColumns.add(column);
+        conditions.add(quote(column) + comparison);
+        parameters.add(value);
+        return this;
+    }
+
+    static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    // The smallest string greater than every string starting with prefix: the last code point plus one.
+    // SQLite compares text by its UTF-8 bytes, which sorts like code points. Null when there is no such string
+    static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            int start = end - Character.charCount(last);
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1 == Character.MIN_SURROGATE ? Character.MAX_SURROGATE + 1 : last + 1;
+                return prefix.substring(0, start) + new String(Character.toChars(next));
+            }
+            end = start;
+        }
+        return null;
+    }
+}
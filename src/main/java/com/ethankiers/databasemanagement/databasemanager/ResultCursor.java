@@ -0,0 +1,139 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Walks a result set one row at a time while holding its connection lease.
+ * The statement is not taken from the statement cache, so other calls on the same connection
+ * cannot reset it while the cursor is open. Closing the cursor releases the result set,
+ * the statement and the lease, which happens automatically once the last row has been read.
+ * A cursor on the writer connection is read to the end when it is turned into a stream, see {@link #stream()}.
+ */
+final class ResultCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(ResultCursor.class);
+
+    interface RowMapper<T> {
+        // Returns null to skip the row when the cursor skips nulls
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private final ConnectionPool.Lease lease;
+    private final PreparedStatement pst;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final boolean skipNulls;
+    private T next;
+    private boolean hasNext = false;
+    private boolean closed = false;
+
+    // Takes ownership of the lease, it is released even when opening the cursor fails
+    ResultCursor(ConnectionPool.Lease lease, String sql, int fetchSize, RowMapper<T> mapper, boolean skipNulls,
+                 Object... parameters) throws SQLException {
+        this.lease = lease;
+        this.mapper = mapper;
+        this.skipNulls = skipNulls;
+        PreparedStatement statement = null;
+        try {
+            statement = lease.connection().prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            this.rs = statement.executeQuery();
+            this.pst = statement;
+        } catch (SQLException e) {
+            if (statement != null) {
+                statement.close();
+            }
+            lease.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (hasNext) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            while (rs.next()) {
+                next = mapper.map(rs);
+                if (next != null || !skipNulls) {
+                    hasNext = true;
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Error reading results: " + e.getMessage(), e);
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T value = next;
+        next = null;
+        hasNext = false;
+        return value;
+    }
+
+    // A writer lease holds the pool's write lock, which blocks every other call until it is released and can only
+    // be released by the thread that took it. Its rows are read into memory here and the lease is given back at once,
+    // so only streams on reader connections are lazy
+    Stream<T> stream() throws SQLException {
+        if (lease.isWriter()) {
+            List<T> rows = new ArrayList<>();
+            try {
+                while (hasNext()) {
+                    rows.add(next());
+                }
+            } catch (IllegalStateException e) {
+                throw (SQLException) e.getCause();
+            } finally {
+                close();
+            }
+            return rows.stream();
+        }
+        int characteristics = skipNulls ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.ORDERED;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, characteristics), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            rs.close();
+            pst.close();
+        } catch (SQLException e) {
+            log.error("Error closing cursor: {}", e.getMessage(), e);
+        } finally {
+            lease.close();
+        }
+    }
+}
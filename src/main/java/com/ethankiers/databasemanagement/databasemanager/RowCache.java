@@ -0,0 +1,125 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of single-row lookups, keyed by table, selected columns, filter column and value.
+ * Entries expire after a fixed time and are dropped as a whole table through {@link #invalidate(String)}:
+ * every table has a version that writes bump, and an entry or a load started under an older version is ignored.
+ * Cached rows are unmodifiable (values may be null), the manager hands callers a copy.
+ */
+final class RowCache {
+
+    record Key(String table, String columns, String filterColumn, String value) {
+    }
+
+    private record Entry(List<String> row, long version, long expiresAt) {
+    }
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries;
+    // SQLite table names are case-insensitive, versions are keyed by the lower case name
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    RowCache(int capacity, long ttlNanos) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Row cache size must be at least 1.");
+        }
+        if (ttlNanos <= 0) {
+            throw new IllegalArgumentException("Row cache time to live must be positive.");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > RowCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static Key key(String table, String columns, String filterColumn, String value) {
+        return new Key(table.toLowerCase(Locale.ROOT), columns, filterColumn, value);
+    }
+
+    // Returns the cached row, or null when the caller has to query it
+    List<String> get(Key key) {
+        long version = version(key.table());
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && (entry.version() != version || System.nanoTime() - entry.expiresAt() >= 0)) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.row();
+    }
+
+    // Version to hand back to put(), read before querying so a write in between is noticed
+    long version(String table) {
+        AtomicLong version = versions.get(table);
+        return version != null ? version.get() : 0L;
+    }
+
+    void put(Key key, long version, List<String> row) {
+        if (version != version(key.table())) {
+            return; // The table was written while the row was loaded
+        }
+        synchronized (this) {
+            entries.put(key, new Entry(Collections.unmodifiableList(new ArrayList<>(row)), version, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    // Stale entries are skipped by get() and pushed out by newer ones, nothing is scanned here
+    void invalidate(String table) {
+        versions.computeIfAbsent(table.toLowerCase(Locale.ROOT), name -> new AtomicLong()).incrementAndGet();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+}
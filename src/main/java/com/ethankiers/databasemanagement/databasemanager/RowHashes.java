@@ -0,0 +1,99 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Content hashes of the rows an incremental import wrote, per table and key, kept in a side table
+ * so the next import of the same file can skip rows that have not changed.
+ * A hash is the first 64 bits of a SHA-256 over the row's values and their types.
+ * Writes go into the caller's transaction, the connection must not be in autocommit mode.
+ */
+final class RowHashes implements AutoCloseable {
+
+    // Internal tables start with _dbm_ and are left out of getTables()
+    static final String TABLE = "_dbm_import_hashes";
+
+    private final Connection conn;
+    private final String tableName;
+    private final MessageDigest digest;
+    private final PreparedStatement lookup;
+    private final BatchWriter writer;
+
+    RowHashes(Connection conn, String tableName, int batchSize) throws SQLException {
+        this.conn = conn;
+        this.tableName = tableName;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (table_name TEXT NOT NULL, row_key TEXT NOT NULL, " +
+                    "hash INTEGER NOT NULL, PRIMARY KEY (table_name, row_key)) WITHOUT ROWID;");
+        }
+        this.lookup = conn.prepareStatement("SELECT hash FROM " + TABLE + " WHERE table_name = ? AND row_key = ?;");
+        try {
+            this.writer = new BatchWriter(conn, "INSERT INTO " + TABLE + " (table_name, row_key, hash) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (table_name, row_key) DO UPDATE SET hash = excluded.hash;", batchSize, 1);
+        } catch (SQLException e) {
+            lookup.close();
+            throw e;
+        }
+    }
+
+    // Forgets every hash of the table, used when the table did not exist before the import
+    void clear() throws SQLException {
+        try (PreparedStatement pst = conn.prepareStatement("DELETE FROM " + TABLE + " WHERE table_name = ?;")) {
+            pst.setString(1, tableName);
+            pst.executeUpdate();
+        }
+    }
+
+    long hash(Object[] values) {
+        for (Object value : values) {
+            if (value == null) {
+                digest.update((byte) 0);
+            } else {
+                // Type tag first, so the number 1 and the text "1" hash differently
+                digest.update(value instanceof Long ? (byte) 1 : value instanceof Double ? (byte) 2 : (byte) 3);
+                digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0x1F);
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    boolean unchanged(String key, long hash) throws SQLException {
+        lookup.setString(1, tableName);
+        lookup.setString(2, key);
+        try (ResultSet rs = lookup.executeQuery()) {
+            return rs.next() && rs.getLong(1) == hash;
+        }
+    }
+
+    void record(String key, long hash) throws SQLException {
+        writer.add(new Object[]{tableName, key, hash});
+    }
+
+    void finish() throws SQLException {
+        writer.finish();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            lookup.close();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory copy of the table list and each table's columns, read from {@code PRAGMA table_info}
+ * the first time a table is asked for, along with the columns that lead an index ({@code PRAGMA index_list}). Entries are dropped with {@link #invalidate(String)} whenever
+ * the manager changes the schema, changes made by other connections are not noticed.
+ * Lookups never hold the catalog lock while waiting for a connection.
+ */
+final class SchemaCatalog {
+
+    // indexedColumns are the columns an equality lookup can answer from an index
+    record TableSchema(List<String> columnNames, List<String> columnTypes, List<String> indexedColumns) {
+    }
+
+    private final ConnectionPool pool;
+    // SQLite table names are case-insensitive
+    private final Map<String, TableSchema> schemas = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private List<String> tables;
+    // Bumped on every invalidation so a load that raced with DDL is not cached
+    private long version = 0;
+
+    SchemaCatalog(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    List<String> getTables() throws SQLException {
+        long loadVersion;
+        synchronized (this) {
+            if (tables != null) {
+                return tables;
+            }
+            loadVersion = version;
+        }
+
+        List<String> loaded = new ArrayList<>();
+        // Exclude internal SQLite tables and the manager's own _dbm_ tables
+        String query = "SELECT name FROM sqlite_master WHERE type='table' AND name NOT LIKE 'sqlite_%' " +
+                "AND name NOT LIKE '\\_dbm\\_%' ESCAPE '\\';";
+
+        try (ConnectionPool.Lease lease = pool.read();
+             Statement stmt = lease.connection().createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                loaded.add(rs.getString("name"));
+            }
+        }
+
+        List<String> result = Collections.unmodifiableList(loaded);
+        synchronized (this) {
+            if (version == loadVersion) {
+                tables = result;
+            }
+        }
+        return result;
+    }
+
+    // Returns an empty schema for tables that do not exist, those are not cached
+    TableSchema getSchema(String tableName) throws SQLException {
+        long loadVersion;
+        synchronized (this) {
+            TableSchema schema = schemas.get(tableName);
+            if (schema != null) {
+                return schema;
+            }
+            loadVersion = version;
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        List<String> indexed = new ArrayList<>();
+
+        try (ConnectionPool.Lease lease = pool.read();
+             Statement stmt = lease.connection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + quote(tableName) + ")")) {
+                while (rs.next()) {
+                    names.add(rs.getString("name"));
+                    types.add(rs.getString("type"));
+                }
+            }
+
+            // Partial indexes do not hold every row, expression indexes have no leading column
+            List<String> indexes = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA index_list(" + quote(tableName) + ")")) {
+                while (rs.next()) {
+                    if (rs.getInt("partial") == 0) {
+                        indexes.add(rs.getString("name"));
+                    }
+                }
+            }
+            for (String index : indexes) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA index_info(" + quote(index) + ")")) {
+                    while (rs.next()) {
+                        String column = rs.getString("name");
+                        if (rs.getInt("seqno") == 0 && column != null && !indexed.contains(column)) {
+                            indexed.add(column);
+                        }
+                    }
+                }
+            }
+        }
+
+        TableSchema schema = new TableSchema(Collections.unmodifiableList(names), Collections.unmodifiableList(types),
+                Collections.unmodifiableList(indexed));
+        synchronized (this) {
+            if (!names.isEmpty() && version == loadVersion) {
+                schemas.put(tableName, schema);
+            }
+        }
+        return schema;
+    }
+
+    private static String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    synchronized void invalidate(String tableName) {
+        schemas.remove(tableName);
+        tables = null;
+        version++;
+    }
+
+    synchronized void invalidateAll() {
+        schemas.clear();
+        tables = null;
+        version++;
+    }
+}
@@ -0,0 +1,122 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Parses one sheet of a workbook on a worker thread and hands its rows to the writer in batches
+ * through a bounded queue, so a slow writer holds the parsers back instead of letting rows pile up.
+ * Each task opens the file on its own, the shared strings and styles are read once and shared.
+ * The last batch of a sheet is always {@link Kind#END} or {@link Kind#ERROR}.
+ */
+final class SheetParseTask implements Runnable {
+
+    enum Kind { HEADER, ROWS, END, ERROR }
+
+    record Batch(int sheetIndex, Kind kind, List<String> headers, List<Object[]> rows, Exception error) {
+    }
+
+    private final String filePath;
+    private final int sheetIndex;
+    private final ReadOnlySharedStringsTable strings;
+    private final StylesTable styles;
+    private final boolean typed;
+    private final int batchSize;
+    private final BlockingQueue<Batch> queue;
+
+    SheetParseTask(String filePath, int sheetIndex, ReadOnlySharedStringsTable strings, StylesTable styles,
+                   boolean typed, int batchSize, BlockingQueue<Batch> queue) {
+        this.filePath = filePath;
+        this.sheetIndex = sheetIndex;
+        this.strings = strings;
+        this.styles = styles;
+        this.typed = typed;
+        this.batchSize = batchSize;
+        this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+        Batch last;
+        try (OPCPackage pkg = OPCPackage.open(filePath, PackageAccess.READ)) {
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+            for (int i = 0; i < sheetIndex; i++) {
+                sheets.next().close();
+            }
+
+            try (InputStream sheetStream = sheets.next()) {
+                Forwarder forwarder = new Forwarder();
+                ColumnTypes.RawNumberFormatter numbers = typed ? new ColumnTypes.RawNumberFormatter() : null;
+                StreamingSheetHandler handler = new StreamingSheetHandler(forwarder, numbers);
+                DataFormatter formatter = typed ? numbers : new ColumnTypes.CellTextFormatter();
+
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, handler, formatter, !typed));
+                parser.parse(new InputSource(sheetStream));
+                forwarder.flush();
+            }
+            last = new Batch(sheetIndex, Kind.END, null, null, null);
+        } catch (StreamingSheetHandler.Abort e) {
+            if (Thread.currentThread().isInterrupted()) {
+                return; // The writer gave up, nobody is waiting for this sheet
+            }
+            last = new Batch(sheetIndex, Kind.ERROR, null, null, e.getSqlException());
+        } catch (Exception e) {
+            last = new Batch(sheetIndex, Kind.ERROR, null, null, e);
+        }
+
+        try {
+            queue.put(last);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Groups parsed rows into batches of batchSize rows for the writer
+    private final class Forwarder implements StreamingSheetHandler.RowListener {
+        private List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void onHeader(List<String> headers) throws SQLException {
+            put(new Batch(sheetIndex, Kind.HEADER, List.copyOf(headers), null, null));
+        }
+
+        @Override
+        public void onRow(Object[] values) throws SQLException {
+            rows.add(values);
+            if (rows.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (!rows.isEmpty()) {
+                put(new Batch(sheetIndex, Kind.ROWS, null, rows, null));
+                rows = new ArrayList<>();
+            }
+        }
+
+        private void put(Batch batch) throws SQLException {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Import cancelled.", e);
+            }
+        }
+    }
+}
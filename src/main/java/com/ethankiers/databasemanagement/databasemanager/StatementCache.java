@@ -0,0 +1,101 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded LRU cache of prepared statements for one connection, keyed by their SQL text.
+ * Statements handed out stay owned by the cache, callers close their result sets but never the statement.
+ * Evicted statements are closed straight away and the rest are closed by {@link #close()}.
+ */
+final class StatementCache implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(StatementCache.class);
+
+    private final Connection conn;
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private long hits = 0;
+    private long misses = 0;
+
+    StatementCache(Connection conn, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Statement cache size must be at least 1.");
+        }
+        this.conn = conn;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        String key = normalize(sql);
+        PreparedStatement pst = statements.get(key);
+        if (pst != null && !pst.isClosed()) {
+            hits++;
+            pst.clearParameters();
+            return pst;
+        }
+
+        misses++;
+        pst = conn.prepareStatement(key);
+        statements.put(key, pst);
+        return pst;
+    }
+
+    // Drops every cached statement, used after the schema changes
+    void clear() {
+        for (PreparedStatement pst : statements.values()) {
+            closeQuietly(pst);
+        }
+        statements.clear();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() {
+        clear();
+    }
+
+    // Generated SQL only differs in whitespace and the trailing semicolon
+    private static String normalize(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+
+    private static void closeQuietly(PreparedStatement pst) {
+        try {
+            pst.close();
+        } catch (SQLException e) {
+            log.error("Error closing cached statement: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+
+/**
+ * Receives cells from POI's SAX sheet parser and hands them on one row at a time,
+ * so a sheet never has to be held in memory as a whole.
+ * The first row seen is treated as the header row, the same way the workbook import does it.
+ * With a {@link ColumnTypes.RawNumberFormatter} numeric cells are handed on as Long or Double, otherwise as text.
+ */
+final class StreamingSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+    interface RowListener {
+        void onHeader(List<String> headers) throws SQLException;
+
+        void onRow(Object[] values) throws SQLException;
+    }
+
+    // Thrown out of the SAX callbacks so the parse stops at the first database error
+    static final class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abort(SQLException cause) {
+            super(cause);
+        }
+
+        SQLException getSqlException() {
+            return (SQLException) getCause();
+        }
+    }
+
+    private final RowListener listener;
+    private final ColumnTypes.RawNumberFormatter numbers;
+    private final List<String> headers = new ArrayList<>();
+    private boolean headerDone = false;
+    private boolean inHeader = false;
+    private Object[] current;
+    private int lastColumn = -1;
+
+    StreamingSheetHandler(RowListener listener) {
+        this(listener, null);
+    }
+
+    StreamingSheetHandler(RowListener listener, ColumnTypes.RawNumberFormatter numbers) {
+        this.listener = listener;
+        this.numbers = numbers;
+    }
+
+    @Override
+    public void startRow(int rowNum) {
+        if (!headerDone) {
+            inHeader = true;
+        } else {
+            current = new Object[headers.size()];
+        }
+        lastColumn = -1;
+    }
+
+    @Override
+    public void endRow(int rowNum) {
+        try {
+            if (inHeader) {
+                inHeader = false;
+                headerDone = true;
+                listener.onHeader(headers);
+            } else if (current != null) {
+                listener.onRow(current);
+                current = null;
+            }
+        } catch (SQLException e) {
+            throw new Abort(e);
+        }
+    }
+
+    @Override
+    public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+        int column = cellReference == null ? lastColumn + 1 : new CellReference(cellReference).getCol();
+        lastColumn = column;
+        Object number = numbers != null ? numbers.takeNumber() : null;
+
+        if (inHeader) {
+            // Header cells are read left to right until the first gap, like getPhysicalNumberOfCells()
+            if (column == headers.size() && formattedValue != null) {
+                headers.add(formattedValue.trim());
+            }
+        } else if (current != null && column < current.length) {
+            current[column] = number != null ? number : formattedValue;
+        }
+    }
+
+    boolean hasHeader() {
+        return headerDone;
+    }
+}
@@ -0,0 +1,187 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes result sets to XLSX sheets or CSV one row at a time, so memory does not grow with the row count.
+ * Values keep their SQLite storage class: integers and reals become numeric cells (plain numbers in CSV),
+ * text stays text and NULL becomes an empty cell, which the imports read back as the same values.
+ */
+final class TableExporter {
+
+    // Rows SXSSF keeps in memory before flushing them to its temporary file
+    static final int WINDOW_ROWS = 100;
+
+    private static final int MAX_SHEET_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private TableExporter() {
+    }
+
+    // Adds a sheet with a header row of column labels followed by every row, returns the rows written
+    static long writeSheet(SXSSFWorkbook workbook, String sheetName, ResultSet rs) throws SQLException {
+        SXSSFSheet sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(sheetName));
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        SXSSFRow header = sheet.createRow(0);
+        for (int i = 0; i < columnCount; i++) {
+            header.createCell(i).setCellValue(metaData.getColumnLabel(i + 1));
+        }
+
+        int rowIndex = 1;
+        while (rs.next()) {
+            if (rowIndex >= MAX_SHEET_ROWS) {
+                throw new SQLException("Sheet '" + sheetName + "' has more rows than an XLSX sheet can hold, export it to CSV instead.");
+            }
+            SXSSFRow row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < columnCount; i++) {
+                Object value = exportValue(rs, i + 1);
+                if (value instanceof Long) {
+                    row.createCell(i).setCellValue((Long) value);
+                } else if (value instanceof Double) {
+                    row.createCell(i).setCellValue((Double) value);
+                } else if (value != null) {
+                    row.createCell(i).setCellValue((String) value);
+                }
+            }
+        }
+        return rowIndex - 1;
+    }
+
+    // Writes a header line of column labels followed by every row as RFC 4180 CSV, returns the rows written
+    static long writeCsv(FileChannel channel, ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        CsvOutput out = new CsvOutput(channel);
+
+        for (int i = 0; i < columnCount; i++) {
+            out.field(i, metaData.getColumnLabel(i + 1));
+        }
+        out.endLine();
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                Object value = exportValue(rs, i + 1);
+                if (value instanceof Long) {
+                    out.field(i, value.toString());
+                } else if (value instanceof Double) {
+                    out.field(i, NumberToTextConverter.toText((Double) value));
+                } else {
+                    out.field(i, (String) value);
+                }
+            }
+            out.endLine();
+            rows++;
+        }
+        out.flush();
+        return rows;
+    }
+
+    // Returns the value as Long, Double or String, integers a double cannot hold exactly stay text
+    private static Object exportValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            long number = ((Number) value).longValue();
+            return ColumnTypes.fitsDouble(number) ? number : Long.toString(number);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        return rs.getString(column);
+    }
+
+    // Encodes CSV text straight into a reused direct buffer that is written to the channel whenever it fills
+    private static final class CsvOutput {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+        private final StringBuilder line = new StringBuilder(256);
+
+        CsvOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void field(int index, String value) {
+            if (index > 0) {
+                line.append(',');
+            }
+            if (value == null) {
+                return;
+            }
+            // Quoted so the empty string is read back as text and an empty field as NULL
+            if (value.isEmpty() || needsQuotes(value)) {
+                line.append('"');
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '"') {
+                        line.append('"');
+                    }
+                    line.append(c);
+                }
+                line.append('"');
+            } else {
+                line.append(value);
+            }
+        }
+
+        void endLine() throws IOException {
+            line.append("\r\n");
+            CharBuffer chars = CharBuffer.wrap(line);
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    result.throwException();
+                }
+            }
+            line.setLength(0);
+        }
+
+        void flush() throws IOException {
+            encoder.encode(CharBuffer.allocate(0), bytes, true);
+            encoder.flush(bytes);
+            drain();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        private static boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.util.List;
+
+/**
+ * Named sets of SQLite PRAGMAs for a {@link DatabaseManager}.
+ * journal_mode and page_size belong to the database file and are only set when the manager opens it,
+ * page_size only takes effect on a database that has no tables yet. The other settings belong to each
+ * connection and can be switched for a while with {@link DatabaseManager#useProfile(TuningProfile)}.
+ * Every profile uses WAL, so reader connections keep working whichever profile is active.
+ */
+public enum TuningProfile {
+
+    // Fastest writes: no fsync at all. Survives the application crashing, but an operating system crash
+    // or power loss can corrupt the file, so only use it for data that can be loaded again
+    BULK_LOAD("bulk-load", "WAL", "OFF", -262144, 268435456L, "MEMORY", 65536),
+
+    // Large page cache and a 1 GiB memory map so repeated reads come from memory
+    READ_HEAVY("read-heavy", "WAL", "NORMAL", -131072, 1073741824L, "MEMORY", 4096),
+
+    // Every commit is synced to disk before it returns
+    DURABLE("durable", "WAL", "FULL", -16384, 0L, "DEFAULT", 4096);
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    // Negative values are KiB, as PRAGMA cache_size takes them
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int pageSize;
+
+    TuningProfile(String name, String journalMode, String synchronous, int cacheSize, long mmapSize, String tempStore, int pageSize) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.pageSize = pageSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Looks a profile up by its name, "bulk-load", "read-heavy" or "durable"
+    public static TuningProfile fromName(String name) {
+        for (TuningProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name) || profile.name().equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown tuning profile: " + name);
+    }
+
+    // Settings of the database file, page_size has to come before the switch to WAL
+    List<String> databasePragmas() {
+        return List.of("PRAGMA page_size=" + pageSize + ";", "PRAGMA journal_mode=" + journalMode + ";");
+    }
+
+    // Settings of one connection, the pool leaves synchronous out for readers since they never write
+    List<String> connectionPragmas() {
+        return List.of("PRAGMA synchronous=" + synchronous + ";", "PRAGMA cache_size=" + cacheSize + ";",
+                "PRAGMA mmap_size=" + mmapSize + ";", "PRAGMA temp_store=" + tempStore + ";");
+    }
+}
@@ -3,6 +3,8 @@ module com.ethankiers.databasemanagement.databasemanager {
     requires org.apache.poi.ooxml;
     requires org.apache.logging.log4j;
     requires java.sql;
+    requires java.management;
+    requires java.xml;
 
     opens com.ethankiers.databasemanagement.databasemanager to javafx.fxml;
     exports com.ethankiers.databasemanagement.databasemanager;
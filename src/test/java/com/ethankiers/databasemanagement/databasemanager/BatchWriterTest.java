@@ -0,0 +1,136 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchWriterTest {
+
+    private static final String INSERT = "INSERT INTO T (Id, Name) VALUES (?, ?)";
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void createTable() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE T (Id, Name TEXT)");
+        }
+    }
+
+    @Test
+    void commitsEveryFewBatchesAndRollsBackTheRestWithoutFinish() throws Exception {
+        try (Connection conn = open()) {
+            try (BatchWriter writer = new BatchWriter(conn, INSERT, 2, 2)) {
+                assertFalse(conn.getAutoCommit());
+                for (int i = 0; i < 5; i++) {
+                    writer.add(new Object[] {(long) i, "n" + i});
+                    // Two batches of two rows make a commit, other connections see nothing before it
+                    assertEquals(i < 3 ? 0 : 4, count());
+                }
+                assertEquals(4, writer.getRowsWritten());
+            }
+            assertTrue(conn.getAutoCommit());
+        }
+        assertEquals(4, count());
+    }
+
+    @Test
+    void finishCommitsTheRemainingRows() throws Exception {
+        try (Connection conn = open()) {
+            try (BatchWriter writer = new BatchWriter(conn, INSERT, 2, 10)) {
+                for (int i = 0; i < 3; i++) {
+                    writer.add(new Object[] {(long) i, "n" + i});
+                }
+                assertEquals(0, count());
+                writer.finish();
+                assertEquals(3, writer.getRowsWritten());
+            }
+            assertTrue(conn.getAutoCommit());
+        }
+        assertEquals(3, count());
+    }
+
+    @Test
+    void aCallersTransactionIsNeitherCommittedNorRolledBack() throws Exception {
+        try (Connection conn = open()) {
+            conn.setAutoCommit(false);
+            try (BatchWriter writer = new BatchWriter(conn, INSERT, 1, 1)) {
+                writer.add(new Object[] {1L, "kept"});
+                writer.finish();
+            }
+            try (BatchWriter writer = new BatchWriter(conn, INSERT, 1, 1)) {
+                // Closed without finish, the caller still decides what happens to the row
+                writer.add(new Object[] {2L, "also kept"});
+            }
+            assertFalse(conn.getAutoCommit());
+            assertEquals(0, count());
+            conn.commit();
+        }
+        assertEquals(2, count());
+    }
+
+    @Test
+    void valuesAreBoundByType() throws Exception {
+        try (Connection conn = open()) {
+            try (BatchWriter writer = new BatchWriter(conn, INSERT, 10, 1)) {
+                writer.add(new Object[] {7L, "a"});
+                writer.add(new Object[] {2.5, null});
+                writer.add(new Object[] {"7", "b"});
+                writer.finish();
+            }
+        }
+        assertEquals(List.of("integer text", "real null", "text text"), rows("SELECT typeof(Id) || ' ' || typeof(Name) FROM T ORDER BY rowid"));
+    }
+
+    @Test
+    void updateCountsFollowTheOrderStatementsWereAdded() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO T VALUES (1, 'a'), (2, 'b'), (2, 'c')");
+        }
+
+        try (Connection conn = open();
+             BatchWriter writer = new BatchWriter(conn, "UPDATE T SET Name = ? WHERE Id = ?", 2, 1, true)) {
+            writer.add(new Object[] {"x", 1L});
+            writer.add(new Object[] {"y", 9L});
+            writer.add(new Object[] {"z", 2L});
+            writer.finish();
+            assertArrayEquals(new int[] {1, 0, 2}, writer.getUpdateCounts());
+        }
+        assertEquals(List.of("x", "z", "z"), rows("SELECT Name FROM T ORDER BY rowid"));
+    }
+
+    private Connection open() throws Exception {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("db.sqlite"));
+    }
+
+    // Rows committed so far, read on a separate connection
+    private long count() throws Exception {
+        return Long.parseLong(rows("SELECT COUNT(*) FROM T").get(0));
+    }
+
+    private List<String> rows(String sql) throws Exception {
+        List<String> values = new ArrayList<>();
+        try (Connection conn = open();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+}
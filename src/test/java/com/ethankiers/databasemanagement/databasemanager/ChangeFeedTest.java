@@ -0,0 +1,241 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeFeedTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void changesPushedOutOfTheRingAreReportedAsMissed() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.enableChangeFeed(3, false));
+            ChangeSubscription changes = db.subscribeToChanges();
+            for (int i = 1; i <= 5; i++) {
+                assertTrue(db.addRowToTable("People", new String[] {"K" + i, i == 2 ? null : "n" + i}));
+            }
+
+            List<ChangeRecord> records = changes.poll(10);
+            assertEquals(List.of(3L, 4L, 5L), sequences(records));
+            assertTrue(changes.hasMissedChanges());
+            assertEquals(ChangeRecord.Type.INSERT, records.get(0).getType());
+            assertEquals(List.of("K3", "n3"), records.get(0).getValues());
+            assertEquals(5, changes.getPosition());
+
+            assertTrue(db.deleteRowFromTable("People", "Id", "K4"));
+            records = changes.poll(10);
+            assertFalse(changes.hasMissedChanges());
+            assertEquals("6 DELETE People Id=K4 (1 rows)", records.get(0).toString());
+
+            // An in-memory feed cannot resume positions it never handed out
+            assertThrows(IllegalArgumentException.class, () -> db.subscribeToChanges(7));
+        }
+    }
+
+    @Test
+    void transactionsLargerThanTheRingAreFoldedIntoBulkRecords() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.enableChangeFeed(3, false));
+            ChangeSubscription changes = db.subscribeToChanges();
+            List<String[]> rows = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                rows.add(new String[] {"K" + i, "n" + i});
+            }
+            db.addRows("People", rows);
+
+            Map<String, List<String>> updates = new LinkedHashMap<>();
+            for (int i = 1; i <= 5; i++) {
+                updates.put("K" + i, List.of("K" + i, "changed"));
+            }
+            db.updateRowsInTable("People", "Id", updates);
+
+            List<ChangeRecord> records = changes.poll(10);
+            assertEquals(List.of(1L, 2L), sequences(records));
+            for (ChangeRecord record : records) {
+                assertEquals(ChangeRecord.Type.BULK, record.getType());
+                assertEquals("People", record.getTableName());
+                assertEquals(5, record.getRowCount());
+                assertEquals(List.of(), record.getValues());
+            }
+            assertFalse(changes.hasMissedChanges());
+        }
+    }
+
+    @Test
+    void numbersOfARolledBackTransactionAreHandedOutAgain() throws Exception {
+        Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+        sheets.put("Visitors", List.of(List.of("Id", "Name"), List.of("V1", "Ada")));
+        sheets.put("Cities", List.of(List.of("Name"), List.of("London")));
+        String workbook = Workbooks.write(dir.resolve("book.xlsx"), sheets).toString();
+
+        try (DatabaseManager db = people()) {
+            db.addRowToTable("People", new String[] {"K1", "n1"});
+            assertTrue(db.enableChangeFeed(10, true));
+            ChangeSubscription changes = db.subscribeToChanges();
+
+            // The update flushes its change inside the import's transaction, then Cities fails and rolls both back
+            assertFalse(db.importXlsxToDatabaseIncremental(workbook, Map.of("Visitors", "Id", "Cities", "Code"), false,
+                    (table, rows) -> {
+                        try {
+                            db.updateRowsInTable("People", "Id", Map.of("K1", List.of("K1", "during import")));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }));
+            assertEquals(0, db.getLatestChangeSequence());
+            assertEquals(List.of(), changes.poll(10));
+
+            assertTrue(db.addRowToTable("People", new String[] {"K2", "n2"}));
+            List<ChangeRecord> records = changes.poll(10);
+            assertEquals(List.of(1L), sequences(records));
+            assertEquals(List.of("K2", "n2"), records.get(0).getValues());
+            assertFalse(changes.hasMissedChanges());
+        }
+    }
+
+    @Test
+    void writesFromAnImportCallbackArePublishedWithTheImport() throws Exception {
+        String workbook = Workbooks.write(dir.resolve("book.xlsx"), Map.of("Visitors", List.of(
+                List.of("Id", "Name"), List.of("V1", "Ada"), List.of("V2", "Alan"), List.of("V3", "Grace")))).toString();
+
+        try (DatabaseManager db = people()) {
+            db.setBatchSize(2);
+            db.setBatchesPerCommit(1);
+            assertTrue(db.enableChangeFeed(100, true));
+            ChangeSubscription changes = db.subscribeToChanges();
+
+            // Reported after the first commit and once more after finish(), each report adds a row to People
+            List<Long> reports = new ArrayList<>();
+            assertTrue(db.importXlsxToDatabase(workbook, (table, rows) -> {
+                reports.add(rows);
+                try {
+                    db.addRowToTable("People", new String[] {"P" + rows, "during import"});
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertEquals(List.of(2L, 3L), reports);
+
+            List<String> changed = new ArrayList<>();
+            for (ChangeRecord record : changes.poll(10)) {
+                changed.add(record.getSequence() + " " + record.getType() + " " + record.getTableName() + " " + record.getRowCount());
+            }
+            assertEquals(List.of("1 BULK Visitors 2", "2 INSERT People 1", "3 BULK Visitors 1", "4 INSERT People 1"), changed);
+            assertEquals(4, db.getLatestChangeSequence());
+            assertEquals(List.of("P2", "P3"), db.getColumnValues("People", "Id"));
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            assertTrue(db.enableChangeFeed(100, true));
+            assertEquals(List.of(1L, 2L, 3L, 4L), sequences(db.subscribeToChanges(0).poll(10)));
+        }
+    }
+
+    @Test
+    void aPersistentFeedResumesFromTheLogAfterReopening() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.enableChangeFeed(2, true));
+            db.addRowToTable("People", new String[] {"K1", null});
+            db.addRowToTable("People", new String[] {"K2", "a:b-"});
+            db.updateRowsInTable("People", "Id", Map.of("K2", List.of("K2", "")));
+            db.addRows("People", List.of(new String[] {"K3", "c"}, new String[] {"K4", "d"}));
+            db.deleteRowFromTable("People", "Id", "K3");
+            assertEquals(5, db.getLatestChangeSequence());
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            assertTrue(db.enableChangeFeed(2, true));
+            assertEquals(5, db.getLatestChangeSequence());
+            ChangeSubscription changes = db.subscribeToChanges(0);
+            assertTrue(db.addRowToTable("People", new String[] {"K5", "e"}));
+
+            // The ring only holds the newest change, the rest are read back from the change log
+            List<ChangeRecord> records = changes.poll(10);
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), sequences(records));
+            assertFalse(changes.hasMissedChanges());
+            assertEquals(Arrays.asList("K1", null), records.get(0).getValues());
+            assertEquals(List.of("K2", "a:b-"), records.get(1).getValues());
+            assertEquals(ChangeRecord.Type.UPDATE, records.get(2).getType());
+            assertEquals(List.of("K2", ""), records.get(2).getValues());
+            assertEquals(ChangeRecord.Type.BULK, records.get(3).getType());
+            assertEquals(2, records.get(3).getRowCount());
+            assertEquals("K3", records.get(4).getKeyValue());
+
+            // The latest logged change is kept so the numbering survives another restart
+            assertEquals(5, db.trimChangeLog(6));
+            ChangeSubscription late = db.subscribeToChanges(2);
+            assertEquals(List.of(6L), sequences(late.poll(10)));
+            assertTrue(late.hasMissedChanges());
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            assertTrue(db.enableChangeFeed(2, true));
+            assertEquals(6, db.getLatestChangeSequence());
+            assertEquals(List.of("K1", "K2", "K4", "K5"), db.getColumnValues("People", "Id"));
+        }
+    }
+
+    @Test
+    void pollingWithATimeoutWaitsForTheNextCommit() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.enableChangeFeed(10, false));
+            ChangeSubscription changes = db.subscribeToChanges();
+            assertEquals(List.of(), changes.poll(10, Duration.ofMillis(20)));
+
+            Thread writer = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                    db.addRowToTable("People", new String[] {"K1", "n1"});
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.start();
+            assertEquals(List.of(1L), sequences(changes.poll(10, Duration.ofSeconds(30))));
+            writer.join();
+        }
+    }
+
+    @Test
+    void rowValuesSurviveTheLogEncoding() {
+        List<String> values = Arrays.asList("plain", null, "", "-", "12:34", "3:abc", "ü");
+        assertEquals(values, ChangeFeed.decodeValues(ChangeFeed.encodeValues(values)));
+        assertEquals(List.of(), ChangeFeed.decodeValues(null));
+    }
+
+    private DatabaseManager people() throws Exception {
+        DatabaseManager db = new DatabaseManager(database());
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Id", "TEXT");
+        columns.put("Name", "TEXT");
+        db.createTable("People", columns);
+        return db;
+    }
+
+    private String database() {
+        return dir.resolve("db.sqlite").toString();
+    }
+
+    private static List<Long> sequences(List<ChangeRecord> records) {
+        List<Long> sequences = new ArrayList<>();
+        for (ChangeRecord record : records) {
+            sequences.add(record.getSequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnStreamTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsFromForEachActionReuseTheOnlyReader() throws Exception {
+        try (DatabaseManager db = people(1)) {
+            List<List<String>> rows = new ArrayList<>();
+            boolean read = assertTimeoutPreemptively(TIMEOUT, () -> db.forEachColumnValue("People", "Id", id -> {
+                try {
+                    rows.add(db.getRow("People", "Id", id));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+
+            assertTrue(read);
+            assertEquals(List.of(
+                    List.of("K1", "Ada", "London"),
+                    List.of("K2", "Alan", ""),
+                    List.of("K3", "Grace", "Arlington")), rows);
+        }
+    }
+
+    @Test
+    void nestedStreamsOnOneThreadShareTheReader() throws Exception {
+        try (DatabaseManager db = people(1)) {
+            List<String> pairs = assertTimeoutPreemptively(TIMEOUT, () -> {
+                List<String> result = new ArrayList<>();
+                try (Stream<String> ids = db.streamColumnValues("People", "Id")) {
+                    ids.forEach(id -> {
+                        try (Stream<String> names = db.streamColumnValuesByFilter("People", "Name", "Id", id)) {
+                            result.add(id + "=" + names.collect(Collectors.joining()));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                }
+                return result;
+            });
+
+            assertEquals(List.of("K1=Ada", "K2=Alan", "K3=Grace"), pairs);
+            // The reader went back to the pool once both streams were closed
+            assertEquals(List.of("K1", "Ada", "London"), assertTimeoutPreemptively(TIMEOUT, () -> db.getRow("People", "Id", "K1")));
+        }
+    }
+
+    @Test
+    void streamClosedOnAnotherThreadReturnsItsReader() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try (DatabaseManager db = people(1)) {
+            Stream<String> ids = db.streamColumnValues("People", "Id");
+            other.submit(ids::close).get();
+
+            assertEquals(List.of("K1", "K2", "K3"), assertTimeoutPreemptively(TIMEOUT,
+                    () -> other.submit(() -> db.getColumnValues("People", "Id")).get()));
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    void streamsReturnTheSameValuesAsTheLists() throws Exception {
+        for (int readers : new int[] {0, 2}) {
+            try (DatabaseManager db = people(readers)) {
+                try (Stream<String> cities = db.streamColumnValues("People", "City")) {
+                    assertEquals(db.getColumnValues("People", "City"), cities.toList());
+                }
+                // The filtered stream keeps empty values like the list does
+                try (Stream<String> cities = db.streamColumnValuesByFilter("People", "City", "Name", "a")) {
+                    assertEquals(db.getColumnValuesByFilter("People", "City", "Name", "a"), cities.toList());
+                }
+            }
+            dir.resolve("db.sqlite").toFile().delete();
+        }
+    }
+
+    private DatabaseManager people(int readers) throws Exception {
+        DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString(), readers);
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Id", "TEXT");
+        columns.put("Name", "TEXT");
+        columns.put("City", "TEXT");
+        db.createTable("People", columns);
+        db.addRows("People", Arrays.asList(
+                new String[] {"K1", "Ada", "London"},
+                new String[] {"K2", "Alan", ""},
+                new String[] {"K3", "Grace", "Arlington"}));
+        return db;
+    }
+}
@@ -0,0 +1,168 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ColumnarSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void textColumnsKeepOneDictionaryEntryPerDistinctValue() throws Exception {
+        try (DatabaseManager db = open("Region TEXT", "Total REAL")) {
+            db.addRows("T", List.of(
+                    new String[] {"Nord", "1.5"},
+                    new String[] {"Süd", "2"},
+                    new String[] {"Nord", "3"},
+                    new String[] {null, "4"},
+                    new String[] {"Süd", "5"}));
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("region", "Total"))) {
+                assertEquals(List.of("Region", "Total"), snapshot.getColumns());
+                assertEquals("TEXT", snapshot.getColumnType("Region"));
+                assertEquals(5, snapshot.getRowCount());
+                assertEquals("Süd", snapshot.getValue(1, "Region"));
+                assertNull(snapshot.getValue(3, "Region"));
+                assertEquals(4, snapshot.count("Region"));
+                assertEquals("Nord".getBytes(StandardCharsets.UTF_8).length + "Süd".getBytes(StandardCharsets.UTF_8).length,
+                        snapshot.getOffHeapBytes());
+
+                Map<String, Long> counts = new LinkedHashMap<>();
+                counts.put("Nord", 2L);
+                counts.put("Süd", 2L);
+                counts.put(null, 1L);
+                assertEquals(counts, snapshot.countBy("Region"));
+            }
+        }
+    }
+
+    @Test
+    void nullRowsAreLeftOutOfNumericAggregates() throws Exception {
+        try (DatabaseManager db = open("Amount INTEGER")) {
+            // More than one word of the null bitset, with NULLs on both sides of the word boundary
+            List<String[]> rows = new ArrayList<>();
+            for (int i = 0; i < 130; i++) {
+                rows.add(new String[] {i == 63 || i == 64 || i == 129 ? null : Integer.toString(i - 10)});
+            }
+            db.addRows("T", rows);
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of())) {
+                assertEquals("INTEGER", snapshot.getColumnType("Amount"));
+                assertEquals(127, snapshot.count("Amount"));
+                assertNull(snapshot.getValue(64, "Amount"));
+                assertEquals("55", snapshot.getValue(65, "Amount"));
+                assertEquals(OptionalDouble.of(-10), snapshot.min("Amount"));
+                assertEquals(OptionalDouble.of(118), snapshot.max("Amount"));
+                // Sum of -10..119 less the values the NULL rows would have held
+                assertEquals(7085.0 - 53 - 54 - 119, snapshot.sum("Amount"), 0.0);
+                assertEquals(Long.valueOf(3), snapshot.countBy("Amount").get(null));
+            }
+        }
+    }
+
+    @Test
+    void longSumsDoNotOverflow() throws Exception {
+        try (DatabaseManager db = open("Amount INTEGER")) {
+            db.addRows("T", List.of(
+                    new String[] {Long.toString(Long.MAX_VALUE)},
+                    new String[] {Long.toString(Long.MAX_VALUE)}));
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("Amount"))) {
+                assertEquals("INTEGER", snapshot.getColumnType("Amount"));
+                assertEquals(2.0 * Long.MAX_VALUE, snapshot.sum("Amount"), 1e4);
+            }
+        }
+    }
+
+    @Test
+    void numericColumnsHoldingTextBecomeTextColumns() throws Exception {
+        try (DatabaseManager db = open("Amount INTEGER")) {
+            db.addRows("T", List.of(new String[] {"1"}, new String[] {"2"}, new String[] {null}, new String[] {"n/a"}));
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("Amount"))) {
+                assertEquals("TEXT", snapshot.getColumnType("Amount"));
+                assertEquals(List.of("1", "2", "n/a"), List.of(
+                        snapshot.getValue(0, "Amount"), snapshot.getValue(1, "Amount"), snapshot.getValue(3, "Amount")));
+                assertNull(snapshot.getValue(2, "Amount"));
+                assertEquals(3.0, snapshot.sum("Amount"), 0.0);
+                assertEquals(3, snapshot.count("Amount"));
+            }
+        }
+    }
+
+    @Test
+    void wholeNumbersFollowedByFractionsBecomeReal() throws Exception {
+        try (DatabaseManager db = open("Amount INTEGER")) {
+            db.addRows("T", List.of(new String[] {"1"}, new String[] {null}, new String[] {"2.5"}));
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("Amount"))) {
+                assertEquals("REAL", snapshot.getColumnType("Amount"));
+                assertEquals("1.0", snapshot.getValue(0, "Amount"));
+                assertNull(snapshot.getValue(1, "Amount"));
+                assertEquals(3.5, snapshot.sum("Amount"), 0.0);
+                assertEquals(OptionalDouble.of(1), snapshot.min("Amount"));
+            }
+        }
+    }
+
+    @Test
+    void sumByOrdersGroupsByTheirNumberOfNumericValues() throws Exception {
+        try (DatabaseManager db = open("Region TEXT", "Total TEXT")) {
+            db.addRows("T", List.of(
+                    new String[] {"East", "x"},
+                    new String[] {"East", "y"},
+                    new String[] {"East", "1"},
+                    new String[] {"West", "2"},
+                    new String[] {"West", "3"},
+                    new String[] {"North", "z"}));
+
+            try (ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("Region", "Total"))) {
+                // countBy puts East first, it has the most rows but only one of them is a number
+                assertEquals(List.of("East", "West", "North"), new ArrayList<>(snapshot.countBy("Region").keySet()));
+                Map<String, Double> sums = snapshot.sumBy("Region", "Total");
+                assertEquals(List.of("West", "East"), new ArrayList<>(sums.keySet()));
+                assertEquals(5.0, sums.get("West"), 0.0);
+                assertEquals(1.0, sums.get("East"), 0.0);
+            }
+        }
+    }
+
+    @Test
+    void closedSnapshotsCannotBeRead() throws Exception {
+        try (DatabaseManager db = open("Region TEXT")) {
+            db.addRows("T", List.<String[]>of(new String[] {"Nord"}));
+
+            ColumnarSnapshot snapshot = db.loadColumnarSnapshot("T", List.of("Region"));
+            snapshot.close();
+            snapshot.close();
+            assertThrows(IllegalStateException.class, () -> snapshot.getValue(0, "Region"));
+            assertThrows(IllegalStateException.class, () -> snapshot.countBy("Region"));
+            assertEquals(1, snapshot.getRowCount());
+        }
+    }
+
+    // Table T with columns given as "Name TYPE"
+    private DatabaseManager open(String... columns) throws Exception {
+        DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString());
+        LinkedHashMap<String, String> definitions = new LinkedHashMap<>();
+        for (String column : columns) {
+            String[] parts = column.split(" ");
+            definitions.put(parts[0], parts[1]);
+        }
+        db.createTable("T", definitions);
+        return db;
+    }
+}
@@ -0,0 +1,124 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Readers and a writer sharing one manager. The writer appends rows and rewrites existing ones so that Name and
+ * Copy always hold the same version, readers check that they never see a half-written row or lose a committed one.
+ */
+class ConcurrencyStressTest {
+
+    private static final int READERS = 4;
+    private static final int INITIAL_ROWS = 200;
+    private static final int WRITES = 300;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readersAndAWriterNeitherBlockNorSeePartialRows() throws Exception {
+        for (int connections : new int[] {0, 2}) {
+            run(connections, dir.resolve("db" + connections + ".sqlite"));
+        }
+    }
+
+    private void run(int connections, Path file) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(READERS + 1);
+        try (DatabaseManager db = new DatabaseManager(file.toString(), connections)) {
+            LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+            columns.put("Id", "TEXT");
+            columns.put("Name", "TEXT");
+            columns.put("Copy", "TEXT");
+            db.createTable("Rows", columns);
+            List<String[]> initial = new ArrayList<>();
+            for (int i = 0; i < INITIAL_ROWS; i++) {
+                initial.add(row(i, 0));
+            }
+            db.addRows("Rows", initial);
+            db.addLookupIndex("Rows", List.of("Id"));
+
+            // Rows below committed are visible to every read that starts afterwards
+            AtomicInteger committed = new AtomicInteger(INITIAL_ROWS);
+            AtomicBoolean writing = new AtomicBoolean(true);
+            AtomicInteger reads = new AtomicInteger();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                Future<?> writer = threads.submit(() -> {
+                    try {
+                        for (int w = 1; w <= WRITES; w++) {
+                            if (w % 3 == 0) {
+                                assertTrue(db.addRowToTable("Rows", row(committed.get(), w)));
+                                committed.incrementAndGet();
+                            } else {
+                                int key = w % INITIAL_ROWS;
+                                assertTrue(db.updateRowInTable("Rows", "Id", "K" + key, List.of(row(key, w))));
+                            }
+                        }
+                    } finally {
+                        writing.set(false);
+                    }
+                    return null;
+                });
+
+                List<Future<?>> readers = new ArrayList<>();
+                for (int r = 0; r < READERS; r++) {
+                    int kind = r;
+                    readers.add(threads.submit(() -> {
+                        while (writing.get()) {
+                            int known = committed.get();
+                            if (kind % 2 == 0) {
+                                int key = ThreadLocalRandom.current().nextInt(known);
+                                List<String> values = db.getRow("Rows", "Id", "K" + key);
+                                assertEquals("K" + key, values.get(0));
+                                assertEquals(values.get(1), values.get(2), "Row K" + key);
+                            } else {
+                                try (Stream<String> ids = db.streamColumnValues("Rows", "Id")) {
+                                    long seen = ids.count();
+                                    assertTrue(seen >= known, "Saw " + seen + " rows, " + known + " were committed");
+                                }
+                            }
+                            reads.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+
+                writer.get();
+                for (Future<?> reader : readers) {
+                    reader.get();
+                }
+            });
+
+            assertEquals(INITIAL_ROWS + WRITES / 3, db.getColumnValues("Rows", "Id").size());
+            for (int key = 0; key < committed.get(); key++) {
+                List<String> values = db.getRow("Rows", "Id", "K" + key);
+                assertEquals(values.get(1), values.get(2));
+            }
+            assertTrue(reads.get() > 0);
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static String[] row(int key, int version) {
+        return new String[] {"K" + key, "v" + version, "v" + version};
+    }
+}
@@ -0,0 +1,140 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvParserTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void quotedFieldsKeepDelimitersLineBreaksAndEscapedQuotes() throws Exception {
+        Parsed parsed = parse("Name,Note\r\n\"Smith, Ann\",\"said \"\"hi\"\"\nand left\"\r\nBob,plain\r\n", false);
+
+        assertEquals(List.of("Name", "Note"), parsed.headers);
+        assertEquals(List.of(
+                Arrays.asList("Smith, Ann", "said \"hi\"\nand left"),
+                Arrays.asList("Bob", "plain")), parsed.rows);
+    }
+
+    @Test
+    void emptyFieldsAreNullAndQuotedEmptyFieldsAreEmptyText() throws Exception {
+        Parsed parsed = parse("A,B,C\n,\"\",x\n", false);
+
+        assertEquals(List.of(Arrays.asList(null, "", "x")), parsed.rows);
+    }
+
+    @Test
+    void blankLinesAreSkippedWhenTheHeaderHasSeveralColumns() throws Exception {
+        Parsed parsed = parse("\nA,B\n1,2\n\n3,4\n", false);
+
+        assertEquals(List.of("A", "B"), parsed.headers);
+        assertEquals(List.of(Arrays.asList("1", "2"), Arrays.asList("3", "4")), parsed.rows);
+    }
+
+    @Test
+    void blankLinesAreNullRowsWhenTheHeaderHasOneColumn() throws Exception {
+        Parsed parsed = parse("A\r\n1\r\n\r\n\"\"\r\n2\r\n", false);
+
+        assertEquals(List.of(
+                Arrays.asList("1"),
+                Arrays.asList((String) null),
+                Arrays.asList(""),
+                Arrays.asList("2")), parsed.rows);
+    }
+
+    @Test
+    void byteOrderMarkAndShortOrLongRecords() throws Exception {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] text = "Id,Name\n1\n2,b,extra\n".getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[bom.length + text.length];
+        System.arraycopy(bom, 0, input, 0, bom.length);
+        System.arraycopy(text, 0, input, bom.length, text.length);
+
+        Parsed parsed = parse(input, true);
+        assertEquals(List.of("Id", "Name"), parsed.headers);
+        assertEquals(List.of(Arrays.asList(1L, null), Arrays.asList(2L, "b")), parsed.rows);
+    }
+
+    @Test
+    void fieldsSpanningABufferRefillAreKeptWhole() throws Exception {
+        String longValue = "x".repeat((1 << 20) + 17);
+        Parsed parsed = parse("A,B\n" + longValue + ",\"q" + longValue + "\"\nend,\n", false);
+
+        assertEquals(2, parsed.rows.size());
+        assertEquals(longValue, parsed.rows.get(0).get(0));
+        assertEquals("q" + longValue, parsed.rows.get(0).get(1));
+        assertEquals(Arrays.asList("end", null), parsed.rows.get(1));
+    }
+
+    @Test
+    void singleColumnTablesWithNullsSurviveAnExportAndImport() throws Exception {
+        Path csv = dir.resolve("values.csv");
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("source.db").toString())) {
+            LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+            columns.put("Value", "TEXT");
+            db.createTable("Entries", columns);
+            db.addRows("Entries", List.of(new String[] {"a"}, new String[] {null}, new String[] {""}, new String[] {"b"}));
+            assertTrue(db.exportTableToCsv("Entries", csv.toString()));
+        }
+        assertEquals("Value\r\na\r\n\r\n\"\"\r\nb\r\n", Files.readString(csv));
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("copy.db").toString())) {
+            assertTrue(db.importDelimitedToDatabase(csv.toString(), "Entries", ','));
+            assertEquals(4, db.query("Entries").count());
+        }
+        // getColumnValues leaves out NULL and empty text, so the copy is read directly
+        List<String> values = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("copy.db"));
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT Value FROM Entries ORDER BY rowid")) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        assertEquals(Arrays.asList("a", null, "", "b"), values);
+    }
+
+    private static Parsed parse(String text, boolean typed) throws Exception {
+        return parse(text.getBytes(StandardCharsets.UTF_8), typed);
+    }
+
+    private static Parsed parse(byte[] input, boolean typed) throws Exception {
+        Parsed parsed = new Parsed();
+        new CsvParser(Channels.newChannel(new ByteArrayInputStream(input)), ',').parse(parsed, typed);
+        return parsed;
+    }
+
+    private static final class Parsed implements StreamingSheetHandler.RowListener {
+        List<String> headers;
+        final List<List<Object>> rows = new ArrayList<>();
+
+        @Override
+        public void onHeader(List<String> headers) {
+            this.headers = List.copyOf(headers);
+        }
+
+        @Override
+        public void onRow(Object[] values) {
+            rows.add(Arrays.asList(values));
+        }
+    }
+}
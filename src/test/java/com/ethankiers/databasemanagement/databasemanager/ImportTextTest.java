@@ -0,0 +1,93 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Without column types every Excel import stores a cell as the same text, whichever reader parsed the sheet.
+ */
+class ImportTextTest {
+
+    private static final List<String> EXPECTED = List.of(
+            "K1", "12.0", "2.5", "1.0E15", "TRUE", "B2*2", "14-Mar-2024", "text");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void workbookStreamingAndParallelImportsStoreTheSameText() throws Exception {
+        Path workbook = writeWorkbook(dir.resolve("cells.xlsx"));
+
+        List<String> workbookRow;
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("workbook.db").toString())) {
+            assertTrue(db.importXlsxToDatabase(workbook.toString()));
+            workbookRow = db.getRow("Cells", "Id", "K1");
+        }
+        assertEquals(EXPECTED, workbookRow);
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("streaming.db").toString())) {
+            assertTrue(db.importXlsxToDatabaseStreaming(workbook.toString()));
+            assertEquals(workbookRow, db.getRow("Cells", "Id", "K1"));
+        }
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("parallel.db").toString())) {
+            assertTrue(db.importXlsxToDatabaseParallel(workbook.toString(), 2));
+            assertEquals(workbookRow, db.getRow("Cells", "Id", "K1"));
+        }
+    }
+
+    @Test
+    void reimportingAWorkbookImportedWholeMatchesItsNumericKeys() throws Exception {
+        Path workbook = Workbooks.write(dir.resolve("keys.xlsx"), Map.of("Keys", List.of(
+                List.of("Id", "Name"), List.of(1, "Ada"), List.of(2, "Alan"))));
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("keys.db").toString())) {
+            assertTrue(db.importXlsxToDatabase(workbook.toString()));
+            assertTrue(db.importXlsxToDatabaseIncremental(workbook.toString(), Map.of("Keys", "Id"), false));
+            assertEquals(List.of("1.0", "2.0"), db.getColumnValues("Keys", "Id"));
+        }
+    }
+
+    private static Path writeWorkbook(Path file) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             OutputStream out = Files.newOutputStream(file)) {
+            CellStyle date = workbook.createCellStyle();
+            date.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+
+            Sheet sheet = workbook.createSheet("Cells");
+            List<String> headers = List.of("Id", "Whole", "Fraction", "Large", "Flag", "Formula", "Date", "Text");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < headers.size(); i++) {
+                header.createCell(i).setCellValue(headers.get(i));
+            }
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("K1");
+            row.createCell(1).setCellValue(12);
+            row.createCell(2).setCellValue(2.5);
+            row.createCell(3).setCellValue(1e15);
+            row.createCell(4).setCellValue(true);
+            row.createCell(5).setCellFormula("B2*2");
+            row.createCell(6).setCellValue(LocalDate.of(2024, 3, 14));
+            row.getCell(6).setCellStyle(date);
+            row.createCell(7).setCellValue("text");
+            // Excel saves formula results with the formula, the streaming reader only sees cells that have a value
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            workbook.write(out);
+        }
+        return file;
+    }
+}
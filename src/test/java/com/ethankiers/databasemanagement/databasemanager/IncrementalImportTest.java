@@ -0,0 +1,146 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IncrementalImportTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reimportUpdatesRowsInPlaceAndAppendsNewKeys() throws Exception {
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString())) {
+            assertTrue(db.importXlsxToDatabaseIncremental(people("first.xlsx", List.of(
+                    List.of("K1", "Ada", "London"),
+                    List.of("K2", "Alan", "Wilmslow"))), Map.of("People", "Id"), false));
+
+            assertTrue(db.importXlsxToDatabaseIncremental(people("second.xlsx", List.of(
+                    List.of("K2", "Alan", "Cambridge"),
+                    List.of("K3", "Grace", "Arlington"))), Map.of("people", "id"), false));
+
+            assertEquals(3, db.query("People").count());
+            assertEquals(List.of("K1", "Ada", "London"), db.getRow("People", "Id", "K1"));
+            assertEquals(List.of("K2", "Alan", "Cambridge"), db.getRow("People", "Id", "K2"));
+            assertEquals(List.of("K3", "Grace", "Arlington"), db.getRow("People", "Id", "K3"));
+        }
+    }
+
+    @Test
+    void skipUnchangedOnlyWritesRowsWhoseContentChanged() throws Exception {
+        List<List<Object>> rows = List.of(
+                List.of("K1", "Ada", "London"),
+                List.of("K2", "Alan", "Wilmslow"),
+                List.of("K3", "Grace", "Arlington"));
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString())) {
+            assertTrue(db.importXlsxToDatabaseIncremental(people("first.xlsx", rows), Map.of("People", "Id"), true));
+            assertTrue(db.enableChangeFeed(100, false));
+            ChangeSubscription changes = db.subscribeToChanges();
+
+            List<List<Object>> changed = new ArrayList<>(rows);
+            changed.set(1, List.of("K2", "Alan", "Cambridge"));
+            assertTrue(db.importXlsxToDatabaseIncremental(people("second.xlsx", changed), Map.of("People", "Id"), true));
+
+            List<ChangeRecord> records = changes.poll(10);
+            assertEquals(1, records.size());
+            assertEquals(ChangeRecord.Type.UPSERT, records.get(0).getType());
+            assertEquals("K2", records.get(0).getKeyValue());
+            assertEquals(List.of("K2", "Alan", "Cambridge"), records.get(0).getValues());
+            assertEquals(List.of("K2", "Alan", "Cambridge"), db.getRow("People", "Id", "K2"));
+
+            // Without skipUnchanged every row is written again
+            assertTrue(db.importXlsxToDatabaseIncremental(people("third.xlsx", changed), Map.of("People", "Id"), false));
+            assertEquals(3, changes.poll(10).size());
+        }
+    }
+
+    @Test
+    void rowsWithoutKeyAndUnlistedSheetsAreSkipped() throws Exception {
+        Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+        List<List<Object>> people = new ArrayList<>();
+        people.add(List.of("Id", "Name", "City"));
+        people.add(List.of("K1", "Ada", "London"));
+        people.add(Arrays.asList(null, "Nobody", "Nowhere"));
+        sheets.put("People", people);
+        sheets.put("Other", List.of(List.of("A"), List.of("1")));
+        Path workbook = Workbooks.write(dir.resolve("book.xlsx"), sheets);
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString())) {
+            assertTrue(db.importXlsxToDatabaseIncremental(workbook.toString(), Map.of("People", "Id"), false));
+            assertEquals(1, db.query("People").count());
+            assertEquals(List.of("People"), db.getTables());
+        }
+    }
+
+    @Test
+    void failedSheetRollsBackTheWholeWorkbook() throws Exception {
+        Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+        sheets.put("People", List.of(List.of("Id", "Name"), List.of("K1", "Ada")));
+        sheets.put("Cities", List.of(List.of("Name"), List.of("London")));
+        Path workbook = Workbooks.write(dir.resolve("book.xlsx"), sheets);
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString())) {
+            // Cities has no Code column, so the import fails after People was written
+            assertFalse(db.importXlsxToDatabaseIncremental(workbook.toString(), Map.of("People", "Id", "Cities", "Code"), false));
+            assertEquals(List.of(), db.getTables());
+        }
+    }
+
+    @Test
+    void cachedRowsAreDroppedOnlyOnceTheImportCommitted() throws Exception {
+        Map<String, List<List<Object>>> first = new LinkedHashMap<>();
+        first.put("People", List.of(List.of("Id", "Name"), List.of("K1", "Ada")));
+        first.put("Cities", List.of(List.of("Name", "Country"), List.of("London", "UK")));
+        Map<String, List<List<Object>>> second = new LinkedHashMap<>();
+        second.put("People", List.of(List.of("Id", "Name"), List.of("K1", "Ada Lovelace")));
+        second.put("Cities", List.of(List.of("Name", "Country"), List.of("London", "England")));
+        Map<String, String> keys = Map.of("People", "Id", "Cities", "Name");
+
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString(), 1)) {
+            assertTrue(db.importXlsxToDatabaseIncremental(Workbooks.write(dir.resolve("first.xlsx"), first).toString(), keys, false));
+            db.enableRowCache(100, Duration.ofMinutes(10));
+
+            // While Cities is imported People is already written but not committed, a reader on another connection
+            // still sees and caches the committed row
+            List<List<String>> seen = new ArrayList<>();
+            boolean imported = db.importXlsxToDatabaseIncremental(Workbooks.write(dir.resolve("second.xlsx"), second).toString(), keys, false,
+                    (table, rows) -> {
+                        if (table.equals("Cities")) {
+                            try {
+                                seen.add(reader.submit(() -> db.getRow("People", "Id", "K1")).get());
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+
+            assertTrue(imported);
+            assertEquals(List.of("K1", "Ada"), seen.get(0));
+            assertEquals(List.of("K1", "Ada Lovelace"), db.getRow("People", "Id", "K1"));
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    private String people(String fileName, List<List<Object>> rows) throws Exception {
+        List<List<Object>> sheet = new ArrayList<>();
+        sheet.add(List.of("Id", "Name", "City"));
+        sheet.addAll(rows);
+        return Workbooks.write(dir.resolve(fileName), Map.of("People", sheet)).toString();
+    }
+}
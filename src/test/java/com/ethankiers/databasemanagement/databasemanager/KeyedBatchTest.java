@@ -0,0 +1,121 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KeyedBatchTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void keysAreSentInBatchesAndCountedOneByOne() throws Exception {
+        try (DatabaseManager db = numbers(10)) {
+            db.setBatchSize(3);
+            db.setBatchesPerCommit(1);
+
+            Map<String, List<String>> updates = new LinkedHashMap<>();
+            for (int i = 0; i < 10; i += 2) {
+                updates.put("K" + i, List.of("K" + i, "even"));
+            }
+            updates.put("K99", List.of("K99", "missing"));
+            Map<String, Integer> updated = db.updateRowsInTable("Numbers", "Id", updates);
+            assertEquals(new ArrayList<>(updates.keySet()), new ArrayList<>(updated.keySet()));
+            assertEquals(List.of(1, 1, 1, 1, 1, 0), new ArrayList<>(updated.values()));
+            assertEquals(List.of("K8", "even"), db.getRow("Numbers", "Id", "K8"));
+
+            // A repeated key is deleted once
+            Map<String, Integer> deleted = db.deleteRowsFromTable("Numbers", "Id", List.of("K1", "K3", "K1", "K5", "K7"));
+            assertEquals(List.of("K1", "K3", "K5", "K7"), new ArrayList<>(deleted.keySet()));
+            assertEquals(List.of(1, 1, 1, 1), new ArrayList<>(deleted.values()));
+            assertEquals(6, db.getColumnValues("Numbers", "Id").size());
+        }
+    }
+
+    @Test
+    void aFailingKeyRollsBackEveryBatch() throws Exception {
+        // The UNIQUE constraint is added outside the manager, createTable has no constraints
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE Numbers (Id TEXT, Name TEXT UNIQUE)");
+            for (int i = 0; i < 10; i++) {
+                stmt.execute("INSERT INTO Numbers VALUES ('K" + i + "', 'n" + i + "')");
+            }
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            db.setBatchSize(2);
+            db.setBatchesPerCommit(1);
+            Map<String, List<String>> updates = new LinkedHashMap<>();
+            updates.put("K0", List.of("K0", "changed"));
+            updates.put("K1", List.of("K1", "changed too"));
+            updates.put("K2", List.of("K2", "changed again"));
+            updates.put("K3", List.of("K3", "n9")); // Name already used by K9
+
+            assertEquals(Map.of(), db.updateRowsInTable("Numbers", "Id", updates));
+            assertEquals(List.of("K0", "n0"), db.getRow("Numbers", "Id", "K0"));
+            assertEquals(List.of("K2", "n2"), db.getRow("Numbers", "Id", "K2"));
+        }
+    }
+
+    @Test
+    void aCallersTransactionIsLeftOpen() throws Exception {
+        Map<String, List<List<Object>>> sheets = new LinkedHashMap<>();
+        sheets.put("People", List.of(List.of("Id", "Name"), List.of("K1", "Ada")));
+        sheets.put("Cities", List.of(List.of("Name"), List.of("London")));
+        String workbook = Workbooks.write(dir.resolve("book.xlsx"), sheets).toString();
+
+        try (DatabaseManager db = numbers(3)) {
+            List<Map<String, Integer>> updated = new ArrayList<>();
+            // The callback runs inside the import's transaction, Cities then fails because it has no Code column
+            boolean imported = db.importXlsxToDatabaseIncremental(workbook, Map.of("People", "Id", "Cities", "Code"), false,
+                    (table, rows) -> {
+                        if (table.equals("People")) {
+                            try {
+                                updated.add(db.updateRowsInTable("Numbers", "Id", Map.of("K1", List.of("K1", "during import"))));
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+
+            assertFalse(imported);
+            assertEquals(Map.of("K1", 1), updated.get(0));
+            // The update was part of the import's transaction, so it was rolled back with People
+            assertEquals(List.of("Numbers"), db.getTables());
+            assertEquals(List.of("K1", "n1"), db.getRow("Numbers", "Id", "K1"));
+            assertTrue(db.addRowToTable("Numbers", new String[] {"K3", "n3"}));
+        }
+    }
+
+    private DatabaseManager numbers(int rows) throws Exception {
+        DatabaseManager db = new DatabaseManager(database());
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Id", "TEXT");
+        columns.put("Name", "TEXT");
+        db.createTable("Numbers", columns);
+        List<String[]> values = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            values.add(new String[] {"K" + i, "n" + i});
+        }
+        db.addRows("Numbers", values);
+        return db;
+    }
+
+    private String database() {
+        return dir.resolve("db.sqlite").toString();
+    }
+}
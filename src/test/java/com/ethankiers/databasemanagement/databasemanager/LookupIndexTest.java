@@ -0,0 +1,102 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LookupIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void belongsToTableStillSearchesColumnsWithoutAnIndex() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.addLookupIndex("People", List.of("Id")));
+
+            assertTrue(db.belongsToTable("People", "K2"));
+            assertTrue(db.belongsToTable("People", "Alan"));
+            assertTrue(db.belongsToTable("People", "Arlington"));
+            assertFalse(db.belongsToTable("People", "Nobody"));
+            assertFalse(db.belongsToTable("Missing", "K2"));
+        }
+    }
+
+    @Test
+    void indexesAreFoundAgainAfterReopening() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertTrue(db.addLookupIndex("People", List.of("Id", "City")));
+        }
+        assertEquals(2, indexes().size());
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            assertTrue(db.belongsToTable("People", "London"));
+            assertTrue(db.belongsToTable("People", "Ada"));
+            assertTrue(db.dropLookupIndex("People"));
+            assertFalse(db.dropLookupIndex("People"));
+            assertTrue(db.belongsToTable("People", "London"));
+        }
+        assertEquals(List.of(), indexes());
+    }
+
+    @Test
+    void columnsWhoseNamesSanitizeAlikeGetTheirOwnIndexes() throws Exception {
+        // createTable takes the spaces out of column names, so the table is made directly
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE Pairs (\"a b\" TEXT, a_b TEXT)");
+            stmt.execute("INSERT INTO Pairs VALUES ('x', 'y')");
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            assertTrue(db.addLookupIndex("Pairs", List.of("a b", "a_b")));
+            assertEquals(2, indexes().size());
+            assertTrue(db.belongsToTable("Pairs", "y"));
+            assertTrue(db.dropLookupIndex("Pairs"));
+        }
+        assertEquals(List.of(), indexes());
+    }
+
+    private DatabaseManager people() throws Exception {
+        DatabaseManager db = new DatabaseManager(database());
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Id", "TEXT");
+        columns.put("Name", "TEXT");
+        columns.put("City", "TEXT");
+        db.createTable("People", columns);
+        db.addRows("People", List.of(
+                new String[] {"K1", "Ada", "London"},
+                new String[] {"K2", "Alan", "Wilmslow"},
+                new String[] {"K3", "Grace", "Arlington"}));
+        return db;
+    }
+
+    private String database() {
+        return dir.resolve("db.sqlite").toString();
+    }
+
+    // Index names in the file, read without the manager
+    private List<String> indexes() throws Exception {
+        List<String> names = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database());
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,127 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PageTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowidPagesSkipDeletedRowsAndEndWithoutAToken() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE T (Id INTEGER, Name TEXT)");
+            for (int i = 1; i <= 7; i++) {
+                stmt.execute("INSERT INTO T VALUES (" + i + ", " + (i == 4 ? "NULL" : "'n" + i + "'") + ")");
+            }
+            stmt.execute("DELETE FROM T WHERE Id = 3");
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            Page first = db.getPage("T", null, 3);
+            assertEquals(List.of("Id", "Name"), first.getColumns());
+            assertEquals(List.of(List.of("1", "n1"), List.of("2", "n2"), Arrays.asList("4", null)), first.getRows());
+            assertTrue(first.hasMore());
+
+            // The last page is full, the extra row fetched tells there is nothing after it
+            Page second = db.getPage("T", first.getContinuationToken(), 3);
+            assertEquals(List.of(List.of("5", "n5"), List.of("6", "n6"), List.of("7", "n7")), second.getRows());
+            assertFalse(second.hasMore());
+            assertNull(second.getContinuationToken());
+        }
+    }
+
+    @Test
+    void orderedPagesVisitEveryRowOnceWhateverTheValueTypes() throws Exception {
+        // NULLs, numbers, text and blobs sort in that order, duplicates are broken by rowid
+        Object[] values = {"b", null, 2L, new byte[] {2}, 1.5, "a", null, 2L, new byte[] {1, 0}, "a|b", new byte[] {1}, 10L, -3.25, "b"};
+        try (Connection conn = open()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE T (\"Sort Key\", Id INTEGER)");
+            }
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO T VALUES (?, ?)")) {
+                for (int i = 0; i < values.length; i++) {
+                    insert.setObject(1, values[i]);
+                    insert.setInt(2, i);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        List<String> expected = ids("SELECT Id FROM T ORDER BY \"Sort Key\", rowid");
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            for (int pageSize = 1; pageSize <= values.length + 1; pageSize++) {
+                List<String> seen = new ArrayList<>();
+                String token = null;
+                int pages = 0;
+                do {
+                    Page page = db.getPage("T", "Sort Key", token, pageSize);
+                    page.getRows().forEach(row -> seen.add(row.get(1)));
+                    token = page.getContinuationToken();
+                    // A token that does not move past its page would repeat it forever
+                    assertTrue(++pages <= values.length, "Pages do not advance");
+                } while (token != null);
+
+                assertEquals(expected, seen);
+                assertEquals((values.length + pageSize - 1) / pageSize, pages);
+            }
+        }
+    }
+
+    @Test
+    void badTokensAndPageSizesAreRejected() throws Exception {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE T (Id INTEGER)");
+        }
+
+        try (DatabaseManager db = new DatabaseManager(database())) {
+            String unknownTag = Base64.getUrlEncoder().encodeToString("1|X|0".getBytes());
+            assertThrows(IllegalArgumentException.class, () -> db.getPage("T", "Id", unknownTag, 10));
+            String missingValue = Base64.getUrlEncoder().encodeToString("1".getBytes());
+            assertThrows(IllegalArgumentException.class, () -> db.getPage("T", "Id", missingValue, 10));
+            assertThrows(IllegalArgumentException.class, () -> db.getPage("T", null, 0));
+
+            Page empty = db.getPage("T", null, 10);
+            assertEquals(List.of(), empty.getRows());
+            assertFalse(empty.hasMore());
+        }
+    }
+
+    private Connection open() throws Exception {
+        return DriverManager.getConnection("jdbc:sqlite:" + database());
+    }
+
+    private String database() {
+        return dir.resolve("db.sqlite").toString();
+    }
+
+    private List<String> ids(String sql) throws Exception {
+        List<String> ids = new ArrayList<>();
+        try (Connection conn = open();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getString(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,73 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProfileSwitchTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void switchWaitsForAStreamWhoseThreadWritesBeforeClosingIt() throws Exception {
+        ExecutorService switcher = Executors.newSingleThreadExecutor();
+        try (DatabaseManager db = numbers(1)) {
+            assertTimeoutPreemptively(TIMEOUT, () -> {
+                Future<ProfileSwitch> bulk;
+                try (Stream<String> values = db.streamColumnValues("Numbers", "Value")) {
+                    bulk = switcher.submit(() -> db.useProfile(TuningProfile.BULK_LOAD));
+                    // Give the switch time to start waiting for the reader this thread holds
+                    Thread.sleep(200);
+                    assertTrue(db.addRowToTable("Numbers", new String[] {"3"}));
+                    assertEquals(List.of("1", "2"), values.toList());
+                }
+                switcher.submit(() -> {
+                    bulk.get().close();
+                    return null;
+                }).get();
+            });
+            assertEquals(List.of("1", "2", "3"), db.getColumnValues("Numbers", "Value"));
+        } finally {
+            switcher.shutdownNow();
+        }
+    }
+
+    @Test
+    void switchFailsWhileTheCallingThreadHasAStreamOpen() throws Exception {
+        try (DatabaseManager db = numbers(1)) {
+            try (Stream<String> values = db.streamColumnValues("Numbers", "Value")) {
+                assertThrows(SQLException.class, () -> db.useProfile(TuningProfile.BULK_LOAD));
+            }
+            try (ProfileSwitch bulk = db.useProfile(TuningProfile.BULK_LOAD)) {
+                assertTrue(db.addRowToTable("Numbers", new String[] {"3"}));
+            }
+            assertEquals(List.of("1", "2", "3"), db.getColumnValues("Numbers", "Value"));
+        }
+    }
+
+    private DatabaseManager numbers(int readers) throws Exception {
+        DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString(), readers);
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Value", "TEXT");
+        db.createTable("Numbers", columns);
+        db.addRows("Numbers", List.of(new String[] {"1"}, new String[] {"2"}));
+        return db;
+    }
+}
@@ -0,0 +1,123 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class QueryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void conditionsAreJoinedWithAndAndValuesAreBound() {
+        Query query = new Query(null, "People \"2\"")
+                .select("Name", "Home City")
+                .whereEquals("Id", "K1")
+                .whereEquals("Note", null)
+                .whereBetween("Age", 18, 65)
+                .whereStartsWith("Name", "Al")
+                .orderByDescending("Age")
+                .orderBy("Name")
+                .limit(5);
+
+        assertEquals("SELECT \"Name\", \"Home City\" FROM \"People \"\"2\"\"\""
+                + " WHERE \"Id\" = ? AND \"Note\" IS NULL AND \"Age\" BETWEEN ? AND ? AND \"Name\" >= ? AND \"Name\" < ?"
+                + " ORDER BY \"Age\" DESC, \"Name\" LIMIT ?;", query.toSql());
+        assertArrayEquals(new Object[] {"K1", 18, 65, "Al", "Am", 5}, query.parameters(5));
+        // A prefix is two conditions on the same column
+        assertEquals(Set.of("Name", "Home City", "Id", "Note", "Age"), Set.copyOf(query.referencedColumns()));
+    }
+
+    @Test
+    void inListsArePaddedToAPowerOfTwo() {
+        assertEquals("SELECT * FROM \"T\" WHERE 0;", new Query(null, "T").whereIn("Id", List.of()).toSql());
+        assertEquals("SELECT * FROM \"T\" WHERE \"Id\" IN (?);", new Query(null, "T").whereIn("Id", List.of(1)).toSql());
+        assertEquals("SELECT * FROM \"T\" WHERE \"Id\" IN (?, ?);", new Query(null, "T").whereIn("Id", List.of(1, 2)).toSql());
+
+        Query five = new Query(null, "T").whereIn("Id", List.of(1, 2, 3, 4, 5));
+        assertEquals("SELECT * FROM \"T\" WHERE \"Id\" IN (?, ?, ?, ?, ?, ?, ?, ?);", five.toSql());
+        assertArrayEquals(new Object[] {1, 2, 3, 4, 5, 5, 5, 5}, five.parameters(-1));
+    }
+
+    @Test
+    void prefixBoundsStepTheLastCodePoint() {
+        assertEquals("ac", Query.prefixUpperBound("ab"));
+        assertEquals("a\uE000", Query.prefixUpperBound("a\uD7FF"));
+        assertEquals("a\uD83D\uDE01", Query.prefixUpperBound("a\uD83D\uDE00"));
+        String max = new String(Character.toChars(Character.MAX_CODE_POINT));
+        assertEquals("b", Query.prefixUpperBound("a" + max + max));
+        assertNull(Query.prefixUpperBound(max));
+        assertEquals("SELECT * FROM \"T\" WHERE \"Name\" >= ?;", new Query(null, "T").whereStartsWith("Name", max).toSql());
+        assertEquals("SELECT * FROM \"T\" WHERE typeof(\"Name\") = 'text';", new Query(null, "T").whereStartsWith("Name", "").toSql());
+    }
+
+    @Test
+    void nullComparisonsAndNegativeLimitsAreRejected() {
+        Query query = new Query(null, "T");
+        assertThrows(IllegalArgumentException.class, () -> query.whereGreaterThan("Age", null));
+        assertThrows(IllegalArgumentException.class, () -> query.whereBetween("Age", 1, null));
+        assertThrows(IllegalArgumentException.class, () -> query.limit(-1));
+        assertEquals("SELECT * FROM \"T\";", query.toSql());
+    }
+
+    @Test
+    void queriesRunAgainstTheTable() throws Exception {
+        try (DatabaseManager db = people()) {
+            assertEquals(List.of(List.of("Alan"), List.of("Alice")),
+                    db.query("People").select("Name").whereStartsWith("Name", "Al").orderBy("Name").list());
+            assertEquals(List.of(List.of("K3", "Grace"), List.of("K1", "Ada")),
+                    db.query("People").select("Id", "Name").whereIn("Id", List.of("K3", "K1", "K9")).orderByDescending("Id").list());
+            assertEquals(Arrays.asList("K5", null), db.query("People").whereEquals("Name", null).first());
+            assertEquals(List.of(), db.query("People").whereEquals("Id", "K9").first());
+            assertEquals(5, db.query("People").count());
+            assertEquals(2, db.query("People").limit(2).count());
+            assertEquals(3, db.query("People").whereAtLeast("Id", "K2").whereAtMost("Id", "K4").count());
+
+            try (Stream<List<String>> rows = db.query("people").select("name").whereLessThan("rowid", 3).stream()) {
+                assertEquals("Ada,Alan", rows.map(row -> row.get(0)).collect(Collectors.joining(",")));
+            }
+        }
+    }
+
+    @Test
+    void unknownTablesAndColumnsThrowInsteadOfMatchingText() throws Exception {
+        try (DatabaseManager db = people()) {
+            // Without the check SQLite reads "Missing" as the text 'Missing' and every row matches
+            assertThrows(SQLException.class, () -> db.query("People").whereEquals("Missing", "Missing").list());
+            assertThrows(SQLException.class, () -> db.query("People").select("Nmae").count());
+            assertThrows(SQLException.class, () -> db.query("People").orderBy("Age").stream());
+            assertThrows(SQLException.class, () -> db.query("Nobody").list());
+            assertTrue(db.query("People").whereGreaterThan("ROWID", 0).explain().size() > 0);
+        }
+    }
+
+    private DatabaseManager people() throws Exception {
+        DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString());
+        LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+        columns.put("Id", "TEXT");
+        columns.put("Name", "TEXT");
+        db.createTable("People", columns);
+        db.addRows("People", List.of(
+                new String[] {"K1", "Ada"},
+                new String[] {"K2", "Alan"},
+                new String[] {"K3", "Grace"},
+                new String[] {"K4", "Alice"},
+                new String[] {"K5", null}));
+        return db;
+    }
+}
@@ -0,0 +1,110 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RowCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void aLoadStartedBeforeAWriteIsNotCached() {
+        RowCache cache = new RowCache(10, HOUR);
+        RowCache.Key key = RowCache.key("People", "*", "Id", "K1");
+
+        long version = cache.version(key.table());
+        cache.invalidate("PEOPLE"); // Table names are case-insensitive
+        cache.put(key, version, List.of("K1", "old"));
+        assertNull(cache.get(key));
+
+        cache.put(key, cache.version(key.table()), List.of("K1", "new"));
+        assertEquals(List.of("K1", "new"), cache.get(key));
+
+        // Entries cached before a write are dropped on the next read, other tables keep theirs
+        RowCache.Key other = RowCache.key("Cities", "*", "Name", "London");
+        cache.put(other, cache.version(other.table()), Arrays.asList("London", null));
+        cache.invalidate("people");
+        assertNull(cache.get(key));
+        assertEquals(Arrays.asList("London", null), cache.get(other));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        RowCache cache = new RowCache(2, HOUR);
+        RowCache.Key a = RowCache.key("T", "*", "Id", "a");
+        RowCache.Key b = RowCache.key("T", "*", "Id", "b");
+        RowCache.Key c = RowCache.key("T", "*", "Id", "c");
+
+        cache.put(a, 0, List.of("a"));
+        cache.put(b, 0, List.of("b"));
+        cache.get(a);
+        cache.put(c, 0, List.of("c"));
+
+        assertEquals(List.of("a"), cache.get(a));
+        assertNull(cache.get(b));
+        assertEquals(List.of("c"), cache.get(c));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0.75, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    void entriesExpire() throws Exception {
+        RowCache cache = new RowCache(10, TimeUnit.MILLISECONDS.toNanos(20));
+        RowCache.Key key = RowCache.key("T", "*", "Id", "a");
+        cache.put(key, 0, List.of("a"));
+        assertEquals(List.of("a"), cache.get(key));
+
+        Thread.sleep(50);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+        assertThrows(IllegalArgumentException.class, () -> new RowCache(0, HOUR));
+        assertThrows(IllegalArgumentException.class, () -> new RowCache(1, 0));
+    }
+
+    @Test
+    void writesThroughTheManagerDropCachedRows() throws Exception {
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("db.sqlite").toString())) {
+            LinkedHashMap<String, String> columns = new LinkedHashMap<>();
+            columns.put("Id", "TEXT");
+            columns.put("Name", "TEXT");
+            db.createTable("People", columns);
+            db.addRows("People", List.<String[]>of(new String[] {"K1", "Ada"}));
+            db.enableRowCache(100, Duration.ofHours(1));
+
+            assertEquals(List.of("K1", "Ada"), db.getRow("People", "Id", "K1"));
+            // Callers get a copy they may change
+            db.getRow("People", "Id", "K1").set(1, "changed");
+            assertEquals(List.of("K1", "Ada"), db.getRow("People", "Id", "K1"));
+            // A missing row is cached as well
+            assertEquals(List.of(), db.getRow("People", "Id", "K2"));
+            assertEquals(List.of(), db.getRow("People", "Id", "K2"));
+            assertEquals(3, db.getRowCacheHits());
+            assertEquals(2, db.getRowCacheMisses());
+
+            assertTrue(db.addRowToTable("People", new String[] {"K2", "Alan"}));
+            assertEquals(List.of("K2", "Alan"), db.getRow("People", "Id", "K2"));
+            db.updateRowsInTable("People", "Id", Map.of("K1", List.of("K1", "Grace")));
+            assertEquals(List.of("K1", "Grace"), db.getRow("People", "Id", "K1"));
+            assertEquals(4, db.getRowCacheMisses());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Streams a generated workbook many batches long. Progress is reported on the import thread, where reads run on
+ * the importing connection and see the rows written so far, so each report checks that no more than one batch
+ * of parsed rows is still waiting to be written.
+ */
+class StreamingImportTest {
+
+    private static final int ROWS = 20_000;
+    private static final int BATCH_SIZE = 500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamingImportWritesRowsBatchByBatch() throws Exception {
+        importAndCheck(false);
+    }
+
+    @Test
+    void typedStreamingImportWritesRowsBatchByBatch() throws Exception {
+        importAndCheck(true);
+    }
+
+    private void importAndCheck(boolean typed) throws Exception {
+        Path workbook = dir.resolve("large.xlsx");
+        writeWorkbook(workbook);
+
+        try (DatabaseManager db = new DatabaseManager(dir.resolve("import.db").toString())) {
+            db.setBatchSize(BATCH_SIZE);
+            db.setInferColumnTypes(typed);
+            int[] reports = {0};
+            boolean imported = db.importXlsxToDatabaseStreaming(workbook.toString(), (table, rows) -> {
+                try {
+                    long written = db.query(table).count();
+                    assertTrue(rows - written <= BATCH_SIZE, rows + " rows parsed but only " + written + " written");
+                    reports[0]++;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            assertTrue(imported);
+            // One report per batch and one when the sheet is done
+            assertEquals(ROWS / BATCH_SIZE + 1, reports[0]);
+            assertEquals(List.of("Id", "Name", "City"), db.getTableHeaders("Data"));
+            assertEquals(ROWS, db.query("Data").count());
+            assertEquals(List.of("name 12345", "city 45"), db.getRow("Data", "Name", "name 12345").subList(1, 3));
+            assertEquals(List.of("name 0", "name 1", "name 2"), db.getColumnValues("Data", "Name").subList(0, 3));
+        }
+    }
+
+    private static void writeWorkbook(Path file) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Data");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Id");
+            header.createCell(1).setCellValue("Name");
+            header.createCell(2).setCellValue("City");
+            for (int i = 0; i < ROWS; i++) {
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("name " + i);
+                row.createCell(2).setCellValue("city " + i % 100);
+            }
+            workbook.write(out);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.ethankiers.databasemanagement.databasemanager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+/**
+ * Small workbooks for the import tests. Each sheet is a list of rows, the first row holds the headers.
+ * Numbers become numeric cells, Booleans boolean cells, null leaves the cell out and anything else is text.
+ */
+final class Workbooks {
+
+    private Workbooks() {
+    }
+
+    static Path write(Path file, Map<String, List<List<Object>>> sheets) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+             OutputStream out = Files.newOutputStream(file)) {
+            for (Map.Entry<String, List<List<Object>>> entry : sheets.entrySet()) {
+                Sheet sheet = workbook.createSheet(entry.getKey());
+                List<List<Object>> rows = entry.getValue();
+                for (int r = 0; r < rows.size(); r++) {
+                    Row row = sheet.createRow(r);
+                    List<Object> values = rows.get(r);
+                    for (int c = 0; c < values.size(); c++) {
+                        setCell(row, c, values.get(c));
+                    }
+                }
+            }
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static void setCell(Row row, int column, Object value) {
+        if (value == null) {
+            return;
+        }
+        Cell cell = row.createCell(column);
+        if (value instanceof Number number) {
+            cell.setCellValue(number.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else {
+            cell.setCellValue(value.toString());
+        }
+    }
+}